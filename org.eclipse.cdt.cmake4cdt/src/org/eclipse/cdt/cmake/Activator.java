@@ -11,11 +11,16 @@
 package org.eclipse.cdt.cmake;
 
 import org.eclipse.cdt.cmake.langset.CMakeLangSetProvider;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
 import org.eclipse.cdt.core.model.CModelException;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -33,6 +38,27 @@ public class Activator extends AbstractUIPlugin {
 	
 	private CMakeLangSetProvider langSetProvider = null;
 
+	private CompileDatabaseService compileDatabase = null;
+	private ServiceRegistration<ICompileDatabase> compileDatabaseRegistration = null;
+
+	// one listener for all provider instances CDT creates, it resets the stores of the one in use,
+	// and for the initial cache scripts
+	private final IPropertyChangeListener preferenceListener = new IPropertyChangeListener() {
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			if(PreferenceConstants.P_LANGSET_PERSIST.equals(event.getProperty())) {
+				CMakeLangSetProvider provider = langSetProvider;
+				if(provider != null) {
+					provider.resetEntryStores();
+				}
+			}
+			else if(PreferenceConstants.P_INITIAL_CACHE.equals(event.getProperty())) {
+				// turning seeding off and on again starts over with all checks
+				InitialCache.clear();
+			}
+		}
+	};
+
 	/**
 	 * @return the langSetProvider
 	 */
@@ -67,6 +93,10 @@ public class Activator extends AbstractUIPlugin {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		m_settings.startup(ResourcesPlugin.getWorkspace());
+		compileDatabase = new CompileDatabaseService(m_settings);
+		compileDatabaseRegistration = context.registerService(ICompileDatabase.class, compileDatabase, null);
+		getPreferenceStore().addPropertyChangeListener(preferenceListener);
 	}
 
 	/*
@@ -74,6 +104,16 @@ public class Activator extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		getPreferenceStore().removePropertyChangeListener(preferenceListener);
+		if(compileDatabaseRegistration != null) {
+			compileDatabaseRegistration.unregister();
+			compileDatabaseRegistration = null;
+		}
+		if(compileDatabase != null) {
+			compileDatabase.dispose();
+			compileDatabase = null;
+		}
+		m_settings.shutdown(ResourcesPlugin.getWorkspace());
 		plugin = null;
 		super.stop(context);
 	}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.cdt.cmake.var.ArchToolchainPair;
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.ICommandLauncher;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.resources.IConsole;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.variables.VariablesPlugin;
+
+/**
+ * Configures and builds the active configuration of a project for several architectures,
+ * each with the toolchain file set for it in the preferences and in a build dir of its own
+ * next to the one of the configuration (<code>&lt;build dir&gt;-&lt;arch&gt;</code>).
+ * The build dir of the configuration itself, and with it the indexer, is not touched.
+ *
+ * Every architecture is a job of its own, grouped under one entry in the progress view.
+ * At most {@link PreferenceConstants#P_CMAKE_MAX_PARALLEL_RUNS} of them run at a time, counted 
+ * together with the cmake runs of {@link CMakeRunJob} ({@link CMakeRunLimiter}), and those share 
+ * the parallel jobs of the project ({@link BuildParallelism}), so the matrix does not load the 
+ * machine more than a single build does. Each runs in the build environment of the configuration.
+ * The output of each architecture goes to a log file in its build dir, the result of
+ * all of them is summarized in the CMake console.
+ */
+public class ArchMatrixBuild {
+
+	public static final Object FAMILY = ArchMatrixBuild.class;
+
+	private static final String LOG_FILE = "CMakeFiles/org.eclipse.cdt.cmake.matrix.log"; //$NON-NLS-1$
+	private static final String NO_TOOLCHAIN_FILE = "<none>"; //$NON-NLS-1$
+	private static final int WORK_PER_ARCH = 100;
+
+	private final IProject project;
+	private final String configName;
+	private final IProgressMonitor group;
+	private final int jobsPerArch;
+
+	private final List<ArchJob> jobs = new ArrayList<ArchJob>();
+	private int finished = 0;
+
+	private final IJobChangeListener doneListener = new JobChangeAdapter() {
+		@Override
+		public void done(IJobChangeEvent event) {
+			boolean all;
+			synchronized (jobs) {
+				all = ++finished == jobs.size();
+			}
+			if(all) {
+				group.done();
+				logSummary();
+			}
+		}
+	};
+
+	private ArchMatrixBuild(IProject project, String configName, List<ArchToolchainPair> archs) {
+		this.project = project;
+		this.configName = configName;
+		int maxParallelRuns = Math.max(1, Activator.getDefault().getPreferenceStore().getInt(PreferenceConstants.P_CMAKE_MAX_PARALLEL_RUNS));
+		int maxRunning = Math.min(archs.size(), maxParallelRuns);
+		jobsPerArch = Math.max(1, BuildParallelism.getJobs(project) / maxRunning);
+		group = Job.getJobManager().createProgressGroup();
+		group.beginTask("Building '" + project.getName() + "' [" + configName + "] for " + archs.size() + " architectures", archs.size() * WORK_PER_ARCH); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		for(ArchToolchainPair arch: archs) {
+			ArchJob job = new ArchJob(arch);
+			job.setProgressGroup(group, WORK_PER_ARCH);
+			job.addJobChangeListener(doneListener);
+			jobs.add(job);
+		}
+	}
+
+	/**
+	 * Configures and builds the active configuration of <code>project</code> for each of <code>archs</code>.
+	 */
+	public static void schedule(IProject project, List<ArchToolchainPair> archs) {
+		ICProjectDescription projDesc = CoreModel.getDefault().getProjectDescription(project, false);
+		if(archs.isEmpty() || projDesc == null || projDesc.getActiveConfiguration() == null) {
+			return;
+		}
+		CMakeRunLimiter.schedule(new ArchMatrixBuild(project, projDesc.getActiveConfiguration().getName(), archs).jobs);
+	}
+
+	/**
+	 * @return the build dir of <code>arch</code>, next to the one of the configuration
+	 */
+	public static IPath getBuildDir(IProject project, String configName, String arch) {
+		IPath buildDir = CMakeOutputPath.getPath(project, configName);
+		return buildDir.removeLastSegments(1).append(buildDir.lastSegment() + "-" + arch); //$NON-NLS-1$
+	}
+
+	private void logSummary() {
+		IConsole console = CCorePlugin.getDefault().getConsole("org.eclipse.cdt.cmake.ui.CMakeConsole"); //$NON-NLS-1$
+		console.start(project);
+		StringBuilder sb = new StringBuilder();
+		sb.append("Architectures of '").append(project.getName()).append("' [").append(configName).append("], built with -j").append(jobsPerArch).append(":\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		for(ArchJob job: jobs) {
+			IStatus result = job.getResult();
+			sb.append("  ").append(job.arch.getArchName()).append(": "); //$NON-NLS-1$ //$NON-NLS-2$
+			if(result == null || result.getSeverity() == IStatus.CANCEL) {
+				sb.append("canceled"); //$NON-NLS-1$
+			}
+			else {
+				sb.append(result.getMessage());
+			}
+			sb.append('\n');
+		}
+		try {
+			console.getInfoStream().write(sb.toString());
+		} catch (IOException e) {
+			Activator.log(e);
+		} catch (CoreException e) {
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * Configures and builds for one architecture.
+	 */
+	private class ArchJob extends Job {
+
+		private final ArchToolchainPair arch;
+
+		ArchJob(ArchToolchainPair arch) {
+			super("CMake build of '" + project.getName() + "' for " + arch.getArchName()); //$NON-NLS-1$ //$NON-NLS-2$
+			this.arch = arch;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			monitor.beginTask(getName(), WORK_PER_ARCH);
+			long start = System.currentTimeMillis();
+			IPath buildDir = getBuildDir(project, configName, arch.getArchName());
+			File logFile = buildDir.append(LOG_FILE).toFile();
+			OutputStream log = null;
+			try {
+				logFile.getParentFile().mkdirs();
+				log = new BufferedOutputStream(new FileOutputStream(logFile));
+
+				ICConfigurationDescription cfgDesc = CoreModel.getDefault().getProjectDescription(project, false).getConfigurationByName(configName);
+				CMakeCommand command = createCMakeCommand(cfgDesc);
+				String cmakeExe = command.getCMakeExe();
+				List<String> cmakeArgs = command.getArguments();
+				String[] envp = command.getEnvironment();
+				String initialCacheKey = InitialCache.getKey(cmakeExe, cmakeArgs, envp, project.getLocation());
+				List<String> launchArgs = new ArrayList<String>(InitialCache.getArguments(initialCacheKey, buildDir));
+				launchArgs.addAll(cmakeArgs);
+
+				monitor.subTask("configure"); //$NON-NLS-1$
+				String error = launch(new Path(cmakeExe), launchArgs, envp, buildDir, log, new SubProgressMonitor(monitor, 10));
+				if(error == null) {
+					InitialCache.capture(initialCacheKey, buildDir);
+					monitor.subTask("build"); //$NON-NLS-1$
+					String generator = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR);
+					List<String> buildArgs = new ArrayList<String>();
+					buildArgs.add("-j" + jobsPerArch); //$NON-NLS-1$
+					error = launch(new Path(CMakeInfo.getBuildCommand(generator)), buildArgs, envp, buildDir, log, new SubProgressMonitor(monitor, 85));
+					if(error != null) {
+						error = "build " + error; //$NON-NLS-1$
+					}
+				}
+				else {
+					error = "configure " + error; //$NON-NLS-1$
+				}
+				refresh(buildDir, new SubProgressMonitor(monitor, 5));
+
+				if(monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				String duration = String.format("%.1f s", (System.currentTimeMillis() - start) / 1000.0); //$NON-NLS-1$
+				if(error != null) {
+					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, error + " after " + duration + ", see " + logFile); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				return new Status(IStatus.OK, Activator.PLUGIN_ID, "OK in " + duration + ", " + buildDir); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (CoreException e) {
+				return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "failed: " + e.getMessage(), e); //$NON-NLS-1$
+			} catch (IOException e) {
+				return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "failed: " + e.getMessage(), e); //$NON-NLS-1$
+			} finally {
+				if(log != null) {
+					try {
+						log.close();
+					} catch (IOException e) {
+						// ignore
+					}
+				}
+				monitor.done();
+			}
+		}
+
+		/**
+		 * @return null on success, else what went wrong
+		 */
+		private String launch(IPath command, List<String> args, String[] envp, IPath buildDir, OutputStream log, IProgressMonitor monitor) throws CoreException {
+			CommandLauncherRC launcher = new CommandLauncherRC();
+			launcher.showCommand(true);
+			Process process = launcher.execute(command, args.toArray(new String[args.size()]), envp, buildDir, monitor);
+			if(process == null) {
+				return "could not be started: " + launcher.getErrorMessage(); //$NON-NLS-1$
+			}
+			int state = launcher.waitAndRead(log, log, monitor);
+			if(monitor.isCanceled()) {
+				return "canceled"; //$NON-NLS-1$
+			}
+			return state == ICommandLauncher.OK ? null : "failed with exit code " + state; //$NON-NLS-1$
+		}
+
+		/**
+		 * @return the cmake command of the configuration, with the toolchain file of the architecture 
+		 *         instead of the one of the configuration
+		 */
+		private CMakeCommand createCMakeCommand(ICConfigurationDescription cfgDesc) throws CoreException {
+			String toolchainFile = arch.getToolchainFile();
+			if(toolchainFile == null || toolchainFile.isEmpty() || NO_TOOLCHAIN_FILE.equals(toolchainFile)) {
+				toolchainFile = null;
+			}
+			else {
+				toolchainFile = VariablesPlugin.getDefault().getStringVariableManager().performStringSubstitution(toolchainFile);
+			}
+			CMakeCommand command = CMakeCommand.create(project, cfgDesc, toolchainFile);
+			command.addSourceDir(project.getLocation());
+			return command;
+		}
+
+		private void refresh(IPath buildDir, IProgressMonitor monitor) {
+			IContainer container = ResourcesPlugin.getWorkspace().getRoot().getContainerForLocation(buildDir);
+			if(container != null) {
+				try {
+					if(!container.exists()) {
+						// a new build dir, it has to be found in its parent first
+						container.getParent().refreshLocal(IResource.DEPTH_ONE, null);
+					}
+					container.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+				} catch (CoreException e) {
+					Activator.log(e);
+				}
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+		 */
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == FAMILY;
+		}
+	}
+}
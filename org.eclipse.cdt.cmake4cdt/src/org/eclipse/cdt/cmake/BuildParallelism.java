@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import org.eclipse.cdt.cmake.ui.CMakePropertyConstants;
+import org.eclipse.cdt.managedbuilder.core.IBuilder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Number of parallel jobs (-j) for the make or ninja builder of a project.
+ *
+ * Unless set in the project properties, one job per processor, limited by the 
+ * available memory where it is known (/proc/meminfo on Linux). The automatic value 
+ * never replaces parallel build settings the user has made on the builder.
+ */
+public class BuildParallelism {
+
+	private static final String MEMINFO = "/proc/meminfo"; //$NON-NLS-1$
+	private static final String MEM_AVAILABLE = "MemAvailable:"; //$NON-NLS-1$
+	// what a single compiler process of a C++ build may take
+	private static final long KB_PER_JOB = 1024 * 1024;
+	// project property with the jobs last set on the builder by apply(), to tell them from the user's settings
+	private static final String P_APPLIED_JOBS = "appliedParallelJobs"; //$NON-NLS-1$
+
+	/**
+	 * @return the jobs set in the properties of the project, or else the automatic value
+	 */
+	public static int getJobs(IProject project) {
+		IEclipsePreferences projectProperties = new ProjectScope(project).getNode("org.eclipse.cdt.cmake.scope"); //$NON-NLS-1$
+		int jobs = projectProperties != null ? projectProperties.getInt(CMakePropertyConstants.P_PARALLEL_JOBS, 0) : 0;
+		return jobs > 0 ? jobs : getAutomaticJobs();
+	}
+
+	/**
+	 * Sets the jobs of the project on its builder. A number from the project properties is always set. 
+	 * The automatic value only while the builder is on its default settings, i.e. parallel build off, 
+	 * or still has the jobs set here the last time, so parallel build settings changed by the user are kept.
+	 * 
+	 * The jobs set here are remembered in the project properties right away, the caller has to save the 
+	 * build info if the builder changed, otherwise the builder is back on its old settings after a restart 
+	 * and no longer recognized as set here.
+	 * 
+	 * @return whether the settings of the builder changed
+	 */
+	public static boolean apply(IProject project, IBuilder builder) throws CoreException {
+		IEclipsePreferences projectProperties = new ProjectScope(project).getNode("org.eclipse.cdt.cmake.scope"); //$NON-NLS-1$
+		int jobs = projectProperties.getInt(CMakePropertyConstants.P_PARALLEL_JOBS, 0);
+		if(jobs <= 0) {
+			int applied = projectProperties.getInt(P_APPLIED_JOBS, -1);
+			boolean isDefault = applied < 0 
+					? !builder.isParallelBuildOn() 
+					: builder.isParallelBuildOn() == (applied > 1) && (applied <= 1 || builder.getParallelizationNum() == applied);
+			if(!isDefault) {
+				return false;
+			}
+			jobs = getAutomaticJobs();
+		}
+		boolean changed = builder.isParallelBuildOn() != (jobs > 1) 
+				|| (jobs > 1 && builder.getParallelizationNum() != jobs);
+		if(changed) {
+			builder.setParallelBuildOn(jobs > 1);
+			if(jobs > 1) {
+				builder.setParallelizationNum(jobs);
+			}
+		}
+		if(projectProperties.getInt(P_APPLIED_JOBS, -1) != jobs) {
+			projectProperties.putInt(P_APPLIED_JOBS, jobs);
+			try {
+				projectProperties.flush();
+			} catch (BackingStoreException e) {
+				Activator.log(e);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return one job per processor, but not more than fit into the available memory
+	 */
+	public static int getAutomaticJobs() {
+		int jobs = Runtime.getRuntime().availableProcessors();
+		long availableKb = getAvailableMemoryKb();
+		if(availableKb > 0) {
+			jobs = (int)Math.min(jobs, availableKb / KB_PER_JOB);
+		}
+		return Math.max(1, jobs);
+	}
+
+	/**
+	 * @return the memory available for new processes in kB, -1 if unknown
+	 */
+	private static long getAvailableMemoryKb() {
+		File meminfo = new File(MEMINFO);
+		if(!meminfo.canRead()) {
+			return -1;
+		}
+		BufferedReader reader = null;
+		try {
+			// MemAvailable:    8123456 kB
+			reader = new BufferedReader(new FileReader(meminfo));
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith(MEM_AVAILABLE)) {
+					String value = line.substring(MEM_AVAILABLE.length()).trim();
+					int blank = value.indexOf(' ');
+					return Long.parseLong(blank < 0 ? value : value.substring(0, blank));
+				}
+			}
+		} catch (IOException e) {
+			// unknown
+		} catch (NumberFormatException e) {
+			// unknown
+		} finally {
+			if(reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Passes the build output on and turns the progress ninja (<code>[n/m]</code>) and 
+ * CMake generated makefiles (<code>[ xx%]</code>) print at the start of a line into 
+ * work units of a progress monitor, with throughput and estimated remaining time.
+ *
+ * Output is scanned byte by byte as it passes, only the first bytes of lines starting 
+ * with '[' are looked at more closely, so long builds do not pay for the parsing.
+ */
+public class BuildProgressParser extends OutputStream {
+
+	public static final int TOTAL_WORK = 1000;
+
+	private static final long UPDATE_INTERVAL_MS = 500;
+	// weight of the latest sample in the moving average of the build rate
+	private static final double RATE_WEIGHT = 0.3;
+	private static final int MAX_TAG_LENGTH = 24;
+
+	private final OutputStream out;
+	private final IProgressMonitor monitor;
+
+	private boolean lineStart = true;
+	private boolean inTag = false;
+	private final byte[] tag = new byte[MAX_TAG_LENGTH];
+	private int tagLength = 0;
+
+	private int reportedWork = 0;
+	private long lastSampleTime;
+	private double lastSampleFraction = 0;
+	private int lastSampleEdges = 0;
+	// moving averages per second, negative until the first sample
+	private double fractionRate = -1;
+	private double edgeRate = -1;
+
+	/**
+	 * @param monitor receives {@link #TOTAL_WORK} units for a complete build
+	 */
+	public BuildProgressParser(OutputStream out, IProgressMonitor monitor) {
+		this.out = out;
+		this.monitor = monitor;
+		this.lastSampleTime = System.currentTimeMillis();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		scan((byte)b);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		for(int i = off; i < off + len; i++) {
+			scan(b[i]);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.OutputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void scan(byte b) {
+		boolean lineEnd = b == '\n' || b == '\r';
+		if(inTag) {
+			if(b == ']') {
+				inTag = false;
+				parseTag();
+			}
+			else if(lineEnd || tagLength == MAX_TAG_LENGTH) {
+				inTag = false;
+			}
+			else {
+				tag[tagLength++] = b;
+			}
+		}
+		else if(lineStart && b == '[') {
+			inTag = true;
+			tagLength = 0;
+		}
+		lineStart = lineEnd;
+	}
+
+	private void parseTag() {
+		String str = new String(tag, 0, tagLength).trim();
+		try {
+			if(str.endsWith("%")) { //$NON-NLS-1$
+				// make: [ 42%]
+				int percent = Integer.parseInt(str.substring(0, str.length() - 1).trim());
+				update(percent / 100.0, -1, -1);
+			}
+			else {
+				// ninja: [123/4567]
+				int slash = str.indexOf('/');
+				if(slash > 0) {
+					int edges = Integer.parseInt(str.substring(0, slash));
+					int totalEdges = Integer.parseInt(str.substring(slash + 1));
+					if(totalEdges > 0) {
+						update(edges / (double)totalEdges, edges, totalEdges);
+					}
+				}
+			}
+		} catch (NumberFormatException e) {
+			// some other output in brackets
+		}
+	}
+
+	/**
+	 * @param edges the finished edges, -1 if the build tool does not tell
+	 */
+	private void update(double fraction, int edges, int totalEdges) {
+		int work = (int)(Math.min(fraction, 1.0) * TOTAL_WORK);
+		if(work > reportedWork) {
+			monitor.worked(work - reportedWork);
+			reportedWork = work;
+		}
+
+		long now = System.currentTimeMillis();
+		if(now - lastSampleTime < UPDATE_INTERVAL_MS) {
+			return;
+		}
+		double seconds = (now - lastSampleTime) / 1000.0;
+		fractionRate = average(fractionRate, (fraction - lastSampleFraction) / seconds);
+		if(edges >= 0) {
+			edgeRate = average(edgeRate, (edges - lastSampleEdges) / seconds);
+			lastSampleEdges = edges;
+		}
+		lastSampleTime = now;
+		lastSampleFraction = fraction;
+
+		StringBuilder msg = new StringBuilder();
+		if(edges >= 0) {
+			msg.append('[').append(edges).append('/').append(totalEdges).append("], "); //$NON-NLS-1$
+			msg.append(String.format("%.1f", edgeRate)).append(" edges/s"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		else {
+			msg.append((int)(fraction * 100)).append('%');
+		}
+		if(fractionRate > 0) {
+			long remaining = (long)((1.0 - fraction) / fractionRate);
+			msg.append(String.format(", %d:%02d remaining", remaining / 60, remaining % 60)); //$NON-NLS-1$
+		}
+		monitor.subTask(msg.toString());
+	}
+
+	private static double average(double average, double sample) {
+		return average < 0 ? sample : RATE_WEIGHT * sample + (1 - RATE_WEIGHT) * average;
+	}
+}
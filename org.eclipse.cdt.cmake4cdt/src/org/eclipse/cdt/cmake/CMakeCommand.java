@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.envvar.IContributedEnvironment;
+import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.managedbuilder.core.IConfiguration;
+import org.eclipse.cdt.managedbuilder.core.ITool;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * The cmake executable, arguments and environment of a configure run for a build configuration,
+ * as used by the build ({@link CMakeMakefileGenerator}) and the architecture matrix ({@link ArchMatrixBuild}).
+ *
+ * The arguments are the flags of the cmake tool, the generator and the request for compile_commands.json.
+ * Callers add their own arguments and finally the source dir ({@link #addSourceDir(IPath)}).
+ */
+class CMakeCommand {
+
+	static final String TOOLCHAIN_FILE_ARG = "-DCMAKE_TOOLCHAIN_FILE="; //$NON-NLS-1$
+
+	private final String cmakeExe;
+	private final List<String> args = new ArrayList<String>();
+	private final String[] envp;
+
+	private CMakeCommand(String cmakeExe, String[] envp) {
+		this.cmakeExe = cmakeExe;
+		this.envp = envp;
+	}
+
+	/**
+	 * @return the command with the flags of the cmake tool of the configuration as they are
+	 * @throws CoreException if the values of the cmake variables cannot be determined
+	 */
+	static CMakeCommand create(IProject project, ICConfigurationDescription cfgDesc) throws CoreException {
+		return create(project, cfgDesc, false, null);
+	}
+
+	/**
+	 * @param toolchainFile replaces the toolchain file of the cmake tool, e.g. with the one of an 
+	 *        architecture, <code>null</code> for none
+	 * @throws CoreException if the values of the cmake variables cannot be determined
+	 */
+	static CMakeCommand create(IProject project, ICConfigurationDescription cfgDesc, String toolchainFile) throws CoreException {
+		return create(project, cfgDesc, true, toolchainFile);
+	}
+
+	private static CMakeCommand create(IProject project, ICConfigurationDescription cfgDesc, boolean replaceToolchainFile, 
+			String toolchainFile) throws CoreException {
+		IConfiguration cfg = ManagedBuildManager.getConfigurationForDescription(cfgDesc);
+		ITool[] cmakeTools = cfg.getToolsBySuperClassId(CMakeMakefileGenerator.CMAKE_TOOL_ID);
+
+		CMakeCommand command;
+		// CMake_DESTDIR, ConfigName and CMake_ProjectPath are global. They are set and resolved into the arguments
+		// and the environment under one lock, so a run for another project or configuration cannot change them in between
+		synchronized (CMakeOutputPath.class) {
+			CMakeOutputPath.setVariables(project, cfgDesc.getName());
+
+			IContributedEnvironment ice = CCorePlugin.getDefault().getBuildEnvironmentManager().getContributedEnvironment();
+			IEnvironmentVariable[] envvars = ice.getVariables(cfgDesc);
+			String[] envp = new String[envvars.length];
+			for(int i = 0; i < envvars.length; i++) {
+				envp[i] = envvars[i].getName() + "=" + envvars[i].getValue(); //$NON-NLS-1$
+			}
+			command = new CMakeCommand(getConfiguredCMakeExe(), envp);
+
+			if(cmakeTools.length > 0) {
+				for(String flag: cmakeTools[0].getToolCommandFlags(null, null)) {
+					if(!replaceToolchainFile || !flag.startsWith(TOOLCHAIN_FILE_ARG)) {
+						command.args.add(flag);
+					}
+				}
+			}
+		}
+		if(toolchainFile != null) {
+			command.args.add(TOOLCHAIN_FILE_ARG + toolchainFile);
+		}
+		command.args.add("-G"); //$NON-NLS-1$
+		command.args.add(Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR));
+		command.args.add("-DCMAKE_EXPORT_COMPILE_COMMANDS=On"); //$NON-NLS-1$
+		return command;
+	}
+
+	private static String getConfiguredCMakeExe() {
+		if(Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_CMAKE_VIA_PATH)) {
+			return "cmake"; //$NON-NLS-1$
+		}
+		return Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_EXE);
+	}
+
+	String getCMakeExe() {
+		return cmakeExe;
+	}
+
+	/**
+	 * @return the arguments so far, the list of this command
+	 */
+	List<String> getArguments() {
+		return args;
+	}
+
+	/**
+	 * @return the build environment of the configuration as <code>name=value</code>
+	 */
+	String[] getEnvironment() {
+		return envp;
+	}
+
+	void addArguments(List<String> arguments) {
+		args.addAll(arguments);
+	}
+
+	/**
+	 * Adds the source dir, the last argument.
+	 */
+	void addSourceDir(IPath sourceDir) {
+		args.add(sourceDir.toOSString());
+	}
+}
@@ -8,19 +8,12 @@
 
 package org.eclipse.cdt.cmake;
 
-import java.net.URI;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.cdt.core.ErrorParserManager;
 import org.eclipse.cdt.core.IErrorParser;
 import org.eclipse.cdt.core.IMarkerGenerator;
-import org.eclipse.cdt.utils.EFSExtensionManager;
-import org.eclipse.core.filesystem.URIUtil;
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
 
 /**
  * Error Parser for CMake command on stderr
@@ -35,55 +28,67 @@ public class CMakeErrorParserStdErr implements IErrorParser/*, IErrorParser4 */{
 
 	private ErrorParserState state = ErrorParserState.NONE;
 
+	// every message of cmake starts like this, other lines are skipped after a few comparisons
+	private static final String MESSAGE_PREFIX = "CMake "; //$NON-NLS-1$
+
 	/*
 	 * CMake Error: Error in cmake code at
 	 * /Users/mark/Documents/dev/eclipse-old/workspace/runtime-CDT/testCMake2/
 	 * CMakeLists.txt:32: Parse error. Function missing ending ")". End of file
 	 * reached.
 	 */
-	private static Pattern multiLineErrorIntro = Pattern.compile("CMake Error:.*");
+	private static Pattern multiLineErrorIntro = Pattern.compile("CMake (Error|Warning|Warning \\(dev\\)|Deprecation Warning|Deprecation Error):.*");
 	private static Pattern multiLineErrorFilePath = Pattern.compile("(.*):(\\d+):");
 	/*
 	 * CMake Error at CMakeLists.txt:10 (seasdt):
      *   Unknown CMake command "seasdt".
+     *
+     * CMake Warning (dev) at CMakeLists.txt:3 (project):
+     * CMake Deprecation Warning at CMakeLists.txt:1 (cmake_minimum_required):
 	 */
-	private static Pattern multiLineErrorIntroAndFilePath = Pattern.compile("CMake Error at (.*):(\\d+)\\s*.*:");
-	private static Pattern multiLineErrorMessage = Pattern.compile(".*");;
+	private static Pattern multiLineErrorIntroAndFilePath = Pattern.compile("CMake (Error|Warning|Warning \\(dev\\)|Deprecation Warning|Deprecation Error) at (.*):(\\d+)\\s*.*:");
+
+	// reused for every line, a parser instance is only used by one thread
+	private final Matcher introMatcher = multiLineErrorIntro.matcher(""); //$NON-NLS-1$
+	private final Matcher filePathMatcher = multiLineErrorFilePath.matcher(""); //$NON-NLS-1$
+	private final Matcher introAndFilePathMatcher = multiLineErrorIntroAndFilePath.matcher(""); //$NON-NLS-1$
 
 	private String currentError = "";
 	private String filePath = "";
 	private int lineNumber = 0;
+	private int severity = IMarkerGenerator.SEVERITY_ERROR_RESOURCE;
 
 	@Override
 	public boolean processLine(String line, ErrorParserManager eoParser) {
 
 		switch (state) {
 		case NONE: {
-			if (multiLineErrorIntro.matcher(line).matches()) {
+			if (!line.startsWith(MESSAGE_PREFIX)) {
+				break;
+			}
+			if (introMatcher.reset(line).matches()) {
+				severity = getSeverity(introMatcher.group(1));
 				currentError = line;
 				state = ErrorParserState.INTRO;
-			} else {
-				Matcher matcher = multiLineErrorIntroAndFilePath.matcher(line);
-				if (matcher.matches()) {
-					filePath = matcher.group(1);
-					try {
-						lineNumber = Integer.parseInt(matcher.group(2));
-					} catch (NumberFormatException e) {
-						break;
-					}
-					currentError = "";
-					state = ErrorParserState.FIlE_PATH;
+			} else if (introAndFilePathMatcher.reset(line).matches()) {
+				filePath = introAndFilePathMatcher.group(2);
+				try {
+					lineNumber = Integer.parseInt(introAndFilePathMatcher.group(3));
+				} catch (NumberFormatException e) {
+					break;
 				}
+				severity = getSeverity(introAndFilePathMatcher.group(1));
+				currentError = "";
+				state = ErrorParserState.FIlE_PATH;
 			}
 			break;
 		}
 		case INTRO: {
 			state = ErrorParserState.NONE;
-			Matcher matcher = multiLineErrorFilePath.matcher(line);
-			if (matcher.matches()) {
-				filePath = matcher.group(1);
+			if (filePathMatcher.reset(line).matches()) {
+				filePath = filePathMatcher.group(1);
 				try {
-					lineNumber = Integer.parseInt(matcher.group(2));
+					lineNumber = Integer.parseInt(filePathMatcher.group(2));
 				} catch (NumberFormatException e) {
 					break;
 				}
@@ -93,44 +98,22 @@ public class CMakeErrorParserStdErr implements IErrorParser/*, IErrorParser4 */{
 			break;
 		}
 		case FIlE_PATH:
+			// the first line of the message, whatever it is
 			state = ErrorParserState.NONE;
-			Matcher matcher = multiLineErrorMessage.matcher(line);
-			if (matcher.matches()) {
-				currentError += line;
-				IPath path = new Path(filePath);
-				URI uri = toURI(path, eoParser);
-				path = URIUtil.toPath(uri);
-				IFile[] foundFiles = ResourcesPlugin.getWorkspace().getRoot().findFilesForLocationURI(URIUtil.toURI(path));
-				IFile resource = foundFiles.length > 0 && foundFiles[0] != null && foundFiles[0].exists() ? foundFiles[0] : null;
-				IPath externalPath = resource == null ? path : null;
-				eoParser.generateExternalMarker(resource, lineNumber, currentError, IMarkerGenerator.SEVERITY_ERROR_RESOURCE, "", externalPath);
-				return true;
-			}
-			break;
+			currentError += line;
+			ErrorLocationCache.Location location = ErrorLocationCache.resolve(eoParser, filePath);
+			eoParser.generateExternalMarker(location.file, lineNumber, currentError, severity, "", location.externalPath);
+			return true;
 		}
 
 		return false;
 	}
 
 	/**
-	 * Converts a location {@link IPath} to an {@link URI}.
-	 * The returned URI uses the scheme and authority of the current working directory
-	 * as returned by {@link #getWorkingDirectoryURI()}
-	 *
-	 * @param path - the path to convert to URI.
-	 * @param errParserManager
-	 * @return URI
+	 * @param kind the kind of message after "CMake ", e.g. "Error" or "Deprecation Warning"
 	 */
-	private URI toURI(IPath path, ErrorParserManager errParserManager) {
-		URI uri = null;
-		URI workingDirectoryURI = errParserManager.getWorkingDirectoryURI();
-		if (path.isAbsolute()) {
-			uri = EFSExtensionManager.getDefault().createNewURIFromPath(workingDirectoryURI, path.toString());
-		} else {
-			uri = EFSExtensionManager.getDefault().append(workingDirectoryURI, path.toString());
-		}
-
-		return uri;
+	private static int getSeverity(String kind) {
+		return kind.endsWith("Error") ? IMarkerGenerator.SEVERITY_ERROR_RESOURCE : IMarkerGenerator.SEVERITY_WARNING; //$NON-NLS-1$
 	}
 
 //	TODO: Uncomment once CDT contains IErrorParser4
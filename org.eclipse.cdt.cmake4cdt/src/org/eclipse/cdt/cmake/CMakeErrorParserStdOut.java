@@ -14,11 +14,6 @@ import java.util.regex.Pattern;
 import org.eclipse.cdt.core.ErrorParserManager;
 import org.eclipse.cdt.core.IErrorParser;
 import org.eclipse.cdt.core.IMarkerGenerator;
-import org.eclipse.core.filesystem.URIUtil;
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.core.runtime.Path;
 
 /**
  * Error Parser for CMake command on stdout
@@ -38,14 +33,8 @@ public class CMakeErrorParserStdOut implements IErrorParser/*, IErrorParser4 */{
 		Matcher seeAlsoMatcher = seeAlso.matcher(line);
 		if (seeAlsoMatcher.matches()) {
 			String message = seeAlsoMatcher.group();
-			String path = seeAlsoMatcher.group(1);
-			IPath externalPath = new Path(path);
-			IFile[] foundFiles = ResourcesPlugin.getWorkspace().getRoot().findFilesForLocationURI(URIUtil.toURI(externalPath));
-			IFile resource = foundFiles.length > 0 && foundFiles[0] != null && foundFiles[0].exists() ? foundFiles[0] : null;
-			if (resource != null) {
-				externalPath = null;
-			}
-			eoParser.generateExternalMarker(resource, lineNumber, message, IMarkerGenerator.SEVERITY_INFO, "", externalPath);
+			ErrorLocationCache.Location location = ErrorLocationCache.resolve(eoParser, seeAlsoMatcher.group(1));
+			eoParser.generateExternalMarker(location.file, lineNumber, message, IMarkerGenerator.SEVERITY_INFO, "", location.externalPath);
 			return true;
 		}
 
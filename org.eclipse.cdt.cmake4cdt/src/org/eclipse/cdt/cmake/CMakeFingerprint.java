@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.langset.BuiltinSpecsCache;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Fingerprint of everything a CMake configure run depends on: the command line, the environment,
+ * the contents of the toolchain file and the input files CMake has recorded in the build dir
+ * (CMakeLists.txt files, included modules, CMakeCache.txt).
+ *
+ * The fingerprint of the last successful run is kept in the build dir. If it still matches,
+ * configure and generate can be skipped, as the generated build system is up to date.
+ */
+public class CMakeFingerprint {
+
+	private static final String FINGERPRINT_FILE = "CMakeFiles/org.eclipse.cdt.cmake.fingerprint"; //$NON-NLS-1$
+	private static final String MAKEFILE_CMAKE = "CMakeFiles/Makefile.cmake"; //$NON-NLS-1$
+	private static final String BUILD_NINJA = "build.ninja"; //$NON-NLS-1$
+	private static final String CMAKE_CACHE = "CMakeCache.txt"; //$NON-NLS-1$
+	private static final String TOOLCHAIN_FILE_ARG = "-DCMAKE_TOOLCHAIN_FILE"; //$NON-NLS-1$
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private final MessageDigest digest;
+
+	private CMakeFingerprint() {
+		try {
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			// every JRE has SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param cmakeExe the cmake executable
+	 * @param cmakeArgs the arguments of the cmake invocation
+	 * @param envp the environment of the cmake invocation as <code>name=value</code>
+	 * @param buildDir the build dir cmake is run in
+	 * @return the fingerprint as hex string
+	 */
+	public static String compute(String cmakeExe, List<String> cmakeArgs, String[] envp, IPath buildDir) {
+		CMakeFingerprint fp = new CMakeFingerprint();
+		fp.add(cmakeExe);
+		for(String arg: cmakeArgs) {
+			fp.add(arg);
+		}
+		fp.add(""); //$NON-NLS-1$
+		String[] sortedEnv = envp.clone();
+		Arrays.sort(sortedEnv);
+		for(String var: sortedEnv) {
+			fp.add(var);
+		}
+		fp.add(""); //$NON-NLS-1$
+
+		for(String arg: cmakeArgs) {
+			if(arg.startsWith(TOOLCHAIN_FILE_ARG)) {
+				fp.addContents(new File(arg.substring(arg.indexOf('=') + 1)));
+			}
+		}
+
+		File dir = buildDir.toFile();
+		fp.addStat(new File(dir, CMAKE_CACHE));
+		for(String input: getRecordedInputs(dir)) {
+			File file = new File(input);
+			fp.addStat(file.isAbsolute() ? file : new File(dir, input));
+		}
+		return fp.toHex();
+	}
+
+	/**
+	 * Fingerprint of the tools a configure runs with, independent of the build dir and of 
+	 * arguments like the build type: the toolchain file contents, the compilers given by 
+	 * arguments or by CC and CXX, and the cmake binary. 
+	 * Compilers and cmake are identified by path, modification time and size.
+	 *
+	 * @return the fingerprint as hex string
+	 */
+	public static String computeToolchain(String cmakeExe, List<String> cmakeArgs, String[] envp) {
+		CMakeFingerprint fp = new CMakeFingerprint();
+		fp.add(String.valueOf(BuiltinSpecsCache.getKey(cmakeExe, null, envp)));
+		for(String arg: cmakeArgs) {
+			if(arg.startsWith(TOOLCHAIN_FILE_ARG)) {
+				fp.addContents(new File(arg.substring(arg.indexOf('=') + 1)));
+			}
+			else if(arg.startsWith("-DCMAKE_") && arg.contains("_COMPILER")) { //$NON-NLS-1$ //$NON-NLS-2$
+				fp.add(arg);
+				fp.add(String.valueOf(BuiltinSpecsCache.getKey(arg.substring(arg.indexOf('=') + 1), null, envp)));
+			}
+		}
+		String cc = "cc"; //$NON-NLS-1$
+		String cxx = "c++"; //$NON-NLS-1$
+		for(String var: envp) {
+			if(var.startsWith("CC=")) { //$NON-NLS-1$
+				cc = var.substring(3);
+			}
+			else if(var.startsWith("CXX=")) { //$NON-NLS-1$
+				cxx = var.substring(4);
+			}
+		}
+		fp.add(String.valueOf(BuiltinSpecsCache.getKey(cc, null, envp)));
+		fp.add(String.valueOf(BuiltinSpecsCache.getKey(cxx, null, envp)));
+		return fp.toHex();
+	}
+
+	/**
+	 * @return the hash of str as hex string, e.g. to name a file after a path
+	 */
+	static String hash(String str) {
+		CMakeFingerprint fp = new CMakeFingerprint();
+		fp.add(str);
+		return fp.toHex();
+	}
+
+	/**
+	 * @return the fingerprint of the last successful run in buildDir, <code>null</code> if there is none
+	 */
+	public static String read(IPath buildDir) {
+		File file = buildDir.append(FINGERPRINT_FILE).toFile();
+		if(!file.isFile()) {
+			return null;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			return reader.readLine();
+		} catch (IOException e) {
+			return null;
+		} finally {
+			close(reader);
+		}
+	}
+
+	public static void write(IPath buildDir, String fingerprint) {
+		File file = buildDir.append(FINGERPRINT_FILE).toFile();
+		file.getParentFile().mkdirs();
+		Writer writer = null;
+		try {
+			writer = new FileWriter(file);
+			writer.write(fingerprint);
+		} catch (IOException e) {
+			Activator.log(e);
+		} finally {
+			close(writer);
+		}
+	}
+
+	public static void delete(IPath buildDir) {
+		buildDir.append(FINGERPRINT_FILE).toFile().delete();
+	}
+
+	/**
+	 * @return the input files CMake checks itself before regenerating the build system, 
+	 *         as written by the Makefile or the Ninja generator. Paths may be relative to dir. 
+	 */
+	private static List<String> getRecordedInputs(File dir) {
+		List<String> inputs = new ArrayList<String>();
+		BufferedReader reader = null;
+		try {
+			File makefileCMake = new File(dir, MAKEFILE_CMAKE);
+			File buildNinja = new File(dir, BUILD_NINJA);
+			if(makefileCMake.isFile()) {
+				// set(CMAKE_MAKEFILE_DEPENDS
+				//   "CMakeCache.txt"
+				//   "../CMakeLists.txt"
+				//   )
+				reader = new BufferedReader(new FileReader(makefileCMake));
+				boolean inDepends = false;
+				String line;
+				while((line = reader.readLine()) != null) {
+					line = line.trim();
+					if(line.startsWith("set(CMAKE_MAKEFILE_DEPENDS")) { //$NON-NLS-1$
+						inDepends = true;
+					}
+					else if(inDepends && line.startsWith(")")) { //$NON-NLS-1$
+						break;
+					}
+					else if(inDepends && line.length() > 1 && line.startsWith("\"")) { //$NON-NLS-1$
+						inputs.add(line.substring(1, line.lastIndexOf('"')));
+					}
+				}
+			}
+			else if(buildNinja.isFile()) {
+				// build build.ninja: RERUN_CMAKE | input1 input$ with$ blanks $
+				//     input3
+				reader = new BufferedReader(new FileReader(buildNinja));
+				StringBuilder rule = null;
+				String line;
+				while((line = reader.readLine()) != null) {
+					if(rule == null && line.startsWith("build build.ninja: RERUN_CMAKE")) { //$NON-NLS-1$
+						rule = new StringBuilder();
+					}
+					if(rule != null) {
+						boolean continued = line.endsWith(" $"); //$NON-NLS-1$
+						rule.append(continued ? line.substring(0, line.length() - 2) : line).append(' ');
+						if(!continued) {
+							break;
+						}
+					}
+				}
+				if(rule != null) {
+					int bar = rule.indexOf("|"); //$NON-NLS-1$
+					String deps = bar < 0 ? "" : rule.substring(bar + 1); //$NON-NLS-1$
+					for(String dep: deps.replace("$ ", "\0").replace("$:", ":").split("\\s+")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+						if(!dep.isEmpty()) {
+							inputs.add(dep.replace('\0', ' '));
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			// not recorded, covered by the stat of CMakeCache.txt only
+		} finally {
+			close(reader);
+		}
+		return inputs;
+	}
+
+	private void add(String str) {
+		digest.update(str.getBytes(UTF8));
+		digest.update((byte)0);
+	}
+
+	private void addStat(File file) {
+		add(file.getPath());
+		add(file.exists() ? file.lastModified() + ":" + file.length() : "-"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void addContents(File file) {
+		add(file.getPath());
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[8192];
+			int n;
+			while((n = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, n);
+			}
+		} catch (IOException e) {
+			add("-"); //$NON-NLS-1$
+		} finally {
+			close(in);
+		}
+	}
+
+	private String toHex() {
+		StringBuilder sb = new StringBuilder();
+		for(byte b: digest.digest()) {
+			sb.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
+	private static void close(Closeable closeable) {
+		if(closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+}
@@ -12,13 +12,22 @@
 package org.eclipse.cdt.cmake;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.eclipse.cdt.cmake.langset.BuiltinSpecsCache;
+import org.eclipse.cdt.core.CommandLauncher;
+import org.eclipse.cdt.core.ICommandLauncher;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 
 
@@ -26,19 +35,65 @@ public class CMakeInfo extends HashMap<String,String> {
 	
 	private static final long serialVersionUID = 1L;
 	private String cmakeVersion = null;
+
+	// versions of the cmake executables run so far, by path and modification time
+	private static final Map<String, String> versions = new HashMap<String, String>();
+	private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+)\\.(\\d+).*"); //$NON-NLS-1$
 	
+	// name, description, platforms, build file, build tool
 	private static final String knownGenerators[][] = {
 		//{"Borland Makefiles", "Generates Borland makefiles."},
-		{ICMakeCommandConstants.GENERATOR_NMAKE_MAKEFILES,   "Generates NMake makefiles.", Platform.OS_WIN32},
-		{ICMakeCommandConstants.GENERATOR_NMAKE_MAKEFILES_JOM, "Generates JOM makefiles.", Platform.OS_WIN32},
+		{ICMakeCommandConstants.GENERATOR_NMAKE_MAKEFILES,   "Generates NMake makefiles.", Platform.OS_WIN32, "Makefile", "nmake"},
+		{ICMakeCommandConstants.GENERATOR_NMAKE_MAKEFILES_JOM, "Generates JOM makefiles.", Platform.OS_WIN32, "Makefile", "jom"},
 		//{"Watcom WMake", "Generates Watcom WMake makefiles.", Platform.OS_WIN32},
-		{ICMakeCommandConstants.GENERATOR_MSYS_MAKEFILES, "Generates MSYS makefiles.", Platform.OS_WIN32},
-		{ICMakeCommandConstants.GENERATOR_MINGW_MAKEFILES, "Generates a make file for use with mingw32-make.", Platform.OS_WIN32},
-		{ICMakeCommandConstants.GENERATOR_UNIX_MAKEFILES, "Generates standard UNIX makefiles.", Platform.OS_LINUX+","+Platform.OS_WIN32+","+Platform.OS_MACOSX+"unix"},
-		{ICMakeCommandConstants.GENERATOR_NINJA, "Generates build.ninja files (experimental).", Platform.OS_LINUX+","+Platform.OS_WIN32+","+Platform.OS_MACOSX},
-		{"", "", ""}
+		{ICMakeCommandConstants.GENERATOR_MSYS_MAKEFILES, "Generates MSYS makefiles.", Platform.OS_WIN32, "Makefile", "make"},
+		{ICMakeCommandConstants.GENERATOR_MINGW_MAKEFILES, "Generates a make file for use with mingw32-make.", Platform.OS_WIN32, "Makefile", "mingw32-make.exe"},
+		{ICMakeCommandConstants.GENERATOR_UNIX_MAKEFILES, "Generates standard UNIX makefiles.", Platform.OS_LINUX+","+Platform.OS_WIN32+","+Platform.OS_MACOSX+"unix", "Makefile", "make"},
+		{ICMakeCommandConstants.GENERATOR_NINJA, "Generates build.ninja files.", Platform.OS_LINUX+","+Platform.OS_WIN32+","+Platform.OS_MACOSX, "build.ninja", "ninja"},
+		{"", "", "", "", ""}
 	};
 	
+	private static String[] getGenerator(String generator) {
+		for(int i = 0; !knownGenerators[i][0].isEmpty(); i++) {
+			if(knownGenerators[i][0].equals(generator)) {
+				return knownGenerators[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the name of the top level build file the generator writes, e.g. build.ninja
+	 */
+	public static String getBuildFileName(String generator) {
+		String[] gen = getGenerator(generator);
+		return gen != null ? gen[3] : "Makefile"; //$NON-NLS-1$
+	}
+
+	/**
+	 * @return the tool that builds what the generator has written, e.g. ninja
+	 */
+	public static String getBuildCommand(String generator) {
+		String[] gen = getGenerator(generator);
+		if(gen != null && ICMakeCommandConstants.GENERATOR_UNIX_MAKEFILES.equals(generator) && Platform.OS_WIN32.equals(Platform.getOS())) {
+			// as before the generator could be selected
+			return "mingw32-make.exe"; //$NON-NLS-1$
+		}
+		return gen != null ? gen[4] : "make"; //$NON-NLS-1$
+	}
+
+	/**
+	 * @return true, if cmd is one of the build tools set by default for a generator, 
+	 *         false if it was changed by the user
+	 */
+	public static boolean isDefaultBuildCommand(String cmd) {
+		for(int i = 0; !knownGenerators[i][0].isEmpty(); i++) {
+			if(knownGenerators[i][4].equals(cmd)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
 	/**
 	 * @return the cmakeVersion
@@ -54,6 +109,59 @@ public class CMakeInfo extends HashMap<String,String> {
 		cmakeVersion = ver;
 	}
 	
+	/**
+	 * @return true, if the version is known and at least major.minor
+	 */
+	public boolean isVersionAtLeast(int major, int minor) {
+		if(cmakeVersion == null) {
+			return false;
+		}
+		Matcher matcher = VERSION_PATTERN.matcher(cmakeVersion.trim());
+		if(!matcher.matches()) {
+			return false;
+		}
+		int actualMajor = Integer.parseInt(matcher.group(1));
+		int actualMinor = Integer.parseInt(matcher.group(2));
+		return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+	}
+
+	/**
+	 * Runs <code>cmake --version</code>, once per executable until it changes.
+	 *
+	 * @param cmakeExe the cmake executable, a plain name is looked up in the PATH of envp
+	 * @param envp the environment to run cmake in, <code>null</code> for the one of Eclipse
+	 * @return the info with the version only, which is <code>null</code> if cmake could not be run
+	 */
+	public static CMakeInfo getVersionInfo(String cmakeExe, String[] envp) {
+		File exe = BuiltinSpecsCache.findExecutable(cmakeExe, envp);
+		String key = exe != null ? exe.getAbsolutePath() + '\n' + exe.lastModified() : null;
+		CMakeInfo info = new CMakeInfo();
+		synchronized (versions) {
+			if(key != null && versions.containsKey(key)) {
+				info.setCMakeVersion(versions.get(key));
+				return info;
+			}
+		}
+		ICommandLauncher launcher = new CommandLauncher();
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+		ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+		try {
+			Process process = launcher.execute(new Path(exe != null ? exe.getAbsolutePath() : cmakeExe), 
+					new String[] { "--version" }, envp, null, new NullProgressMonitor()); //$NON-NLS-1$
+			if(process != null && launcher.waitAndRead(stdout, stderr, new NullProgressMonitor()) == ICommandLauncher.OK) {
+				info.parseStdOut(stdout.toString());
+			}
+		} catch (CoreException e) {
+			Activator.log(e);
+		}
+		if(key != null && info.getCMakeVersion() != null) {
+			synchronized (versions) {
+				versions.put(key, info.getCMakeVersion());
+			}
+		}
+		return info;
+	}
+
 	public static String[][] getKnownGenerators() {
 		int size = 0;
 		String currentPlatform = Platform.getOS();
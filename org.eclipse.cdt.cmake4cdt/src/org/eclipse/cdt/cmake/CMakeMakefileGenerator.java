@@ -20,20 +20,24 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.cdt.cmake.langset.CMakeFileApi;
+import org.eclipse.cdt.cmake.langset.CompileCmdsHandler;
+import org.eclipse.cdt.cmake.trace.CMakeProfile;
+import org.eclipse.cdt.cmake.trace.CMakeTrace;
+import org.eclipse.cdt.cmake.ui.CPropertyTab;
 import org.eclipse.cdt.cmake.ui.CMakePropertyConstants;
 import org.eclipse.cdt.cmake.ui.PreferenceConstants;
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.ErrorParserManager;
 import org.eclipse.cdt.core.ICommandLauncher;
 import org.eclipse.cdt.core.IConsoleParser;
-import org.eclipse.cdt.core.envvar.IContributedEnvironment;
-import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
 import org.eclipse.cdt.core.model.CoreModel;
 import org.eclipse.cdt.core.resources.IConsole;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.internal.core.BuildRunnerHelper;
 import org.eclipse.cdt.managedbuilder.core.IConfiguration;
 import org.eclipse.cdt.managedbuilder.core.IManagedBuildInfo;
+import org.eclipse.cdt.managedbuilder.core.IOption;
 import org.eclipse.cdt.managedbuilder.core.ITool;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
@@ -58,9 +62,6 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
-import org.eclipse.core.variables.IStringVariableManager;
-import org.eclipse.core.variables.IValueVariable;
-import org.eclipse.core.variables.VariablesPlugin;
 
 public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator {
 
@@ -94,8 +95,8 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 
 	@Override
 	public String getMakefileName() {
-		// @TODO get settings for selected CMake generator and adjust Makefile Name (e.g. in case of ninja make)
-		return "Makefile";
+		String generator = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR);
+		return CMakeInfo.getBuildFileName(generator);
 	}
 
 	@Override
@@ -123,8 +124,16 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 		return mstatus;
 	}
 	
-	@SuppressWarnings("restriction")
 	public MultiStatus runCMake() throws CoreException {
+		return runCMake(true);
+	}
+
+	/**
+	 * @param force if false, cmake is only run if its inputs have changed since the last successful run
+	 *              (see {@link CMakeFingerprint})
+	 */
+	@SuppressWarnings("restriction")
+	public MultiStatus runCMake(boolean force) throws CoreException {
 		MultiStatus mstatus = new MultiStatus("org.eclipse.cdt.cmake.builder", 0, "success", null );
 		
 //		IConfiguration = buildInfo.getDefaultConfiguration()
@@ -141,8 +150,9 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 		
 		@SuppressWarnings("restriction")
 		BuildRunnerHelper buildRunnerHelper = new BuildRunnerHelper(this.project);
+		// markers are created in batches, and replace the old ones when cmake has finished
+		CMakeMarkerGenerator markerGenerator = null;
 		ICommandLauncher launcher = new CommandLauncherRC();
-		IStringVariableManager varMgr = VariablesPlugin.getDefault().getStringVariableManager();
 
 		try {
 			if (monitor == null) {
@@ -185,11 +195,6 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 			
 			
 
-			IValueVariable destdirVar = varMgr.getValueVariable("CMake_DESTDIR"); //$NON-NLS-1$
-			String destDirStr = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_DESTDIR);
-			destDirStr = varMgr.performStringSubstitution(destDirStr);
-			destdirVar.setValue( destDirStr );
-
 			ICConfigurationDescription cfgDesc = CoreModel.getDefault().getProjectDescription(project).getConfigurationByName(currentConf);
 			IConfiguration cfg = ManagedBuildManager.getConfigurationForDescription(cfgDesc);
 			ITool[] cmakeTools = cfg.getToolsBySuperClassId(CMAKE_TOOL_ID);
@@ -198,28 +203,38 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 				cmakeTool = cmakeTools[0];
 			}
 			
-			List<String> cmakeArgs = new ArrayList<String>();
-			
-			String[] flags = cmakeTool.getToolCommandFlags(null, null);
-			
-			for(int i = 0; i < flags.length; i++) {
-				cmakeArgs.add(flags[i]);
-			}
-			
-			
-//			cmakeArgs.add("-DCMAKE_BUILD_TYPE=" + currentConf);
-//			if(!currentToolchainFile.equals("<none>")) {
-//				cmakeArgs.add("-DCMAKE_TOOLCHAIN_FILE=" + currentToolchainFile);
-//			}
+			// flags of the cmake tool, generator and compile_commands.json, as for the architecture matrix
+			CMakeCommand command = CMakeCommand.create(project, cfgDesc);
+			List<String> cmakeArgs = command.getArguments();
+			String[] envp = command.getEnvironment();
+			String cmakeExe = command.getCMakeExe();
 
-			String generator = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR);
-			cmakeArgs.add("-G");
-			cmakeArgs.add(generator);
-			
-
-			cmakeArgs.add("-DCMAKE_EXPORT_COMPILE_COMMANDS=On");
+			// the trace goes to a file in the build dir, the console could not cope with it
+			IOption traceOption = cmakeTool.getOptionBySuperClassId(CPropertyTab.CMAKE_OPTION_TRACE);
+			boolean trace = traceOption != null && traceOption.getBooleanValue();
+			if(trace && !CMakeInfo.getVersionInfo(cmakeExe, envp).isVersionAtLeast(CMakeTrace.MIN_MAJOR_VERSION, CMakeTrace.MIN_MINOR_VERSION)) {
+				warnToConsole(cmakeConsole, "Trace mode is ignored, it needs CMake " //$NON-NLS-1$
+						+ CMakeTrace.MIN_MAJOR_VERSION + "." + CMakeTrace.MIN_MINOR_VERSION + " or later."); //$NON-NLS-1$ //$NON-NLS-2$
+				trace = false;
+			}
+			if(trace) {
+				// cmake opens the file before it creates CMakeFiles in a new build dir
+				CMakeTrace.getTraceFile(buildDir).getParentFile().mkdirs();
+				command.addArguments(CMakeTrace.getArguments(buildDir));
+			}
+			IOption profilingOption = cmakeTool.getOptionBySuperClassId(CPropertyTab.CMAKE_OPTION_PROFILING);
+			boolean profiling = profilingOption != null && profilingOption.getBooleanValue();
+			if(profiling && !CMakeInfo.getVersionInfo(cmakeExe, envp).isVersionAtLeast(CMakeProfile.MIN_MAJOR_VERSION, CMakeProfile.MIN_MINOR_VERSION)) {
+				warnToConsole(cmakeConsole, "Profiling is ignored, it needs CMake " //$NON-NLS-1$
+						+ CMakeProfile.MIN_MAJOR_VERSION + "." + CMakeProfile.MIN_MINOR_VERSION + " or later."); //$NON-NLS-1$ //$NON-NLS-2$
+				profiling = false;
+			}
+			if(profiling) {
+				CMakeProfile.getProfileFile(buildDir).getParentFile().mkdirs();
+				command.addArguments(CMakeProfile.getArguments(buildDir));
+			}
 			IPath pathToSource = project.getLocation();
-			cmakeArgs.add(pathToSource.toOSString());
+			command.addSourceDir(pathToSource);
 			
 			
 			
@@ -227,16 +242,6 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 			
 			// add some cmake options
 			
-
-			IContributedEnvironment ice = CCorePlugin.getDefault().getBuildEnvironmentManager().getContributedEnvironment();
-			IEnvironmentVariable[] envvars = ice.getVariables( cfgDesc );
-			
-			
-			String[] envp = new String[envvars.length];
-			for(int i = 0; i < envvars.length; i++ ) {
-				envp[i] = envvars[i].getName() + "=" + envvars[i].getValue(); //$NON-NLS-1$
-			}
-			
 			File buildDirFile = buildDir.toFile();
 			if(buildDirFile.exists()) {
 				if(!buildDirFile.isDirectory()) {
@@ -252,31 +257,36 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 			
 			URI workingDirectoryURI = new URI(null, null, buildDir.toString(), null ); //$NON-NLS-1$
 			
-			String cmakeExe = null;
-			boolean cmakeViaPath = Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_CMAKE_VIA_PATH);
-			if(cmakeViaPath == true) {
-				cmakeExe = "cmake";
-			}
-			else {
-				cmakeExe = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_EXE);
-			}
 			IPath cmakePath = new Path( cmakeExe );
+
+			// ask for the code model, the language settings are read from it
+			CMakeFileApi.writeQuery(buildDir);
+			// the language settings keep reading the results of the last successful configure
+			ConfigureSnapshot.prepare(buildDir);
+
+			String fingerprint = CMakeFingerprint.compute(cmakeExe, cmakeArgs, envp, buildDir);
+			if(!force && fingerprint.equals(CMakeFingerprint.read(buildDir)) && isGenerated(buildDir)) {
+				logToConsole(cmakeConsole, new Status(IStatus.INFO, Activator.PLUGIN_ID, 
+						"CMake configuration of '" + project.getName() + "' [" + currentConf + "] is up to date.")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return mstatus;
+			}
+			// a failed or canceled run leaves no fingerprint, the next build runs cmake again
+			CMakeFingerprint.delete(buildDir);
 			
-			String[] a = new String[cmakeArgs.size()];
-			buildRunnerHelper.setLaunchParameters(launcher, cmakePath, cmakeArgs.toArray(a), workingDirectoryURI, null);
+			// a new build dir starts with the check results of an earlier configure with the same toolchain, options and sources.
+			// Not part of the fingerprint, the next run without -C has the same inputs
+			String initialCacheKey = InitialCache.getKey(cmakeExe, cmakeArgs, envp, pathToSource);
+			List<String> launchArgs = new ArrayList<String>(InitialCache.getArguments(initialCacheKey, buildDir));
+			launchArgs.addAll(cmakeArgs);
+			String[] a = new String[launchArgs.size()];
+			buildRunnerHelper.setLaunchParameters(launcher, cmakePath, launchArgs.toArray(a), workingDirectoryURI, null);
 			
-			// Dummy builder only used for marker generation
-			CMakeProjectBuilderImpl markerGenerator = new CMakeProjectBuilderImpl() {
-				{
-					setCurrentProject(project);
-				}
-			};
+			markerGenerator = new CMakeMarkerGenerator(project);
 
 			ErrorParserManager epm = new ErrorParserManager(project, URIUtil.toURI(pathToSource), markerGenerator, new String[] { CMakeErrorParserStdErr.ID, CMakeErrorParserStdOut.ID });
 			List<IConsoleParser> consoleParsers = new ArrayList<IConsoleParser>(); 
 			buildRunnerHelper.prepareStreams(epm, consoleParsers, (org.eclipse.cdt.core.resources.IConsole) cmakeConsole, new SubProgressMonitor(monitor, 20));
 
-			buildRunnerHelper.removeOldMarkers(project, new SubProgressMonitor(monitor, 50, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
 			buildRunnerHelper.greeting(IncrementalProjectBuilder.FULL_BUILD, currentConf, "Running CMake ...", true); //$NON-NLS-1$
 			int state = buildRunnerHelper.build(new SubProgressMonitor(monitor, 60, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
 			buildRunnerHelper.close();
@@ -284,7 +294,25 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 
 			if (state != ICommandLauncher.ILLEGAL_COMMAND) {
 				if(state == ICommandLauncher.OK) {
-					buildRunnerHelper.refreshProject(currentConf, new SubProgressMonitor(monitor, 90, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+					if(trace) {
+						logToConsole(cmakeConsole, new Status(IStatus.INFO, Activator.PLUGIN_ID, 
+								"CMake trace written to " + CMakeTrace.getTraceFile(buildDir) + ", use 'show CMake trace' to view it.")); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					if(profiling) {
+						logToConsole(cmakeConsole, new Status(IStatus.INFO, Activator.PLUGIN_ID, 
+								"CMake profile written to " + CMakeProfile.getProfileFile(buildDir) + ", use 'show CMake profile' to view it.")); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					// computed again, cmake has just rewritten the recorded input files
+					CMakeFingerprint.write(buildDir, CMakeFingerprint.compute(cmakeExe, cmakeArgs, envp, buildDir));
+					InitialCache.capture(initialCacheKey, buildDir);
+					ConfigureSnapshot.publish(buildDir);
+					if(outDirContainer instanceof IFolder && outDirContainer.getProject().equals(project)) {
+						// cmake only writes to the build folder, refreshing it takes a rule on that folder only
+						outDirContainer.refreshLocal(IResource.DEPTH_INFINITE, new SubProgressMonitor(monitor, 90, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+					}
+					else {
+						buildRunnerHelper.refreshProject(currentConf, new SubProgressMonitor(monitor, 90, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+					}
 				}
 				else {
 					mstatus = new MultiStatus("org.eclipse.cdt.cmake.builder", IStatus.ERROR, "CMake failed to generate Makefile. Please see CMake Console for Details.", null );
@@ -310,12 +338,39 @@ public class CMakeMakefileGenerator implements IManagedBuilderMakefileGenerator
 			} catch (IOException e) {
 				ManagedBuilderCorePlugin.log(e);
 			}
+			if(markerGenerator != null) {
+				// also the markers of a failed or canceled run
+				markerGenerator.done();
+			}
 			monitor.done();
 		}
 		
 		return mstatus;
 	}
 	
+	/**
+	 * @return true, if the build system and the compile database exist in buildDir
+	 */
+	private boolean isGenerated(IPath buildDir) {
+		return buildDir.append(getMakefileName()).toFile().isFile() 
+				&& buildDir.append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toFile().isFile();
+	}
+
+	/**
+	 * Writes a line to the info stream of the console, which stays open for the cmake run.
+	 */
+	private void warnToConsole(IConsole console, String message) {
+		try {
+			OutputStream info = console.getInfoStream();
+			info.write((message + System.getProperty("line.separator", "\n")).getBytes()); //$NON-NLS-1$ //$NON-NLS-2$
+			info.flush();
+		} catch (CoreException e) {
+			Activator.log(e);
+		} catch (IOException e) {
+			Activator.log(e);
+		}
+	}
+
 	public void logToConsole(IConsole console, IStatus status) {
 		String errmsg = new String();
 		OutputStream cos;
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.core.IMarkerGenerator;
+import org.eclipse.cdt.core.ProblemMarkerInfo;
+import org.eclipse.cdt.core.model.ICModelMarker;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Collects the problem markers of a cmake run and creates them in batches, each in one 
+ * workspace operation, so the Problems view is updated once per batch instead of once per message.
+ *
+ * {@link #done()} replaces the problem markers of the project by those of the run: markers that 
+ * are reported again are kept as they are, only new ones are created and outdated ones deleted.
+ * The markers of the project are read once, with the first batch, later batches only look at 
+ * them and at the markers created by this run.
+ */
+public class CMakeMarkerGenerator implements IMarkerGenerator {
+
+	// a long run shows its markers in batches of this size, or at least every FLUSH_INTERVAL_MS
+	private static final int BATCH_SIZE = 500;
+	private static final long FLUSH_INTERVAL_MS = 2000;
+
+	private final IProject project;
+	// all markers of the run, in the order reported
+	private final Set<MarkerKey> reported = new LinkedHashSet<MarkerKey>();
+	private final List<ProblemMarkerInfo> pending = new ArrayList<ProblemMarkerInfo>();
+	private long lastFlush = System.currentTimeMillis();
+	// problem markers of the project before the run, read with the first batch
+	private Map<MarkerKey, IMarker> existing = null;
+	// markers created by this run, also the lock of both maps
+	private final Map<MarkerKey, IMarker> created = new HashMap<MarkerKey, IMarker>();
+
+	/**
+	 * Identity of a marker, as far as the Problems view shows it.
+	 */
+	private static class MarkerKey {
+		final IResource resource;
+		final int lineNumber;
+		final String message;
+		final int severity;
+		final String externalLocation;
+
+		MarkerKey(IResource resource, int lineNumber, String message, int severity, String externalLocation) {
+			this.resource = resource;
+			this.lineNumber = lineNumber;
+			this.message = message == null ? "" : message; //$NON-NLS-1$
+			this.severity = severity;
+			this.externalLocation = externalLocation == null ? "" : externalLocation; //$NON-NLS-1$
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof MarkerKey)) {
+				return false;
+			}
+			MarkerKey other = (MarkerKey)obj;
+			return resource.equals(other.resource) && lineNumber == other.lineNumber && severity == other.severity 
+					&& message.equals(other.message) && externalLocation.equals(other.externalLocation);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((resource.hashCode() * 31 + lineNumber) * 31 + message.hashCode()) * 31 + externalLocation.hashCode();
+		}
+	}
+
+	public CMakeMarkerGenerator(IProject project) {
+		this.project = project;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.core.IMarkerGenerator#addMarker(org.eclipse.core.resources.IResource, int, java.lang.String, int, java.lang.String)
+	 */
+	@Override
+	public void addMarker(IResource file, int lineNumber, String errorDesc, int severity, String errorVar) {
+		addMarker(new ProblemMarkerInfo(file, lineNumber, errorDesc, severity, errorVar));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.core.IMarkerGenerator#addMarker(org.eclipse.cdt.core.ProblemMarkerInfo)
+	 */
+	@Override
+	public void addMarker(ProblemMarkerInfo problemMarkerInfo) {
+		List<ProblemMarkerInfo> batch = null;
+		synchronized (this) {
+			if(reported.add(getKey(problemMarkerInfo))) {
+				pending.add(problemMarkerInfo);
+			}
+			long now = System.currentTimeMillis();
+			if(pending.size() >= BATCH_SIZE || (!pending.isEmpty() && now - lastFlush >= FLUSH_INTERVAL_MS)) {
+				batch = new ArrayList<ProblemMarkerInfo>(pending);
+				pending.clear();
+				lastFlush = now;
+			}
+		}
+		if(batch != null) {
+			update(batch, false);
+		}
+	}
+
+	/**
+	 * Creates the markers not shown yet and deletes the markers of the project not reported by this run.
+	 */
+	public void done() {
+		List<ProblemMarkerInfo> batch;
+		synchronized (this) {
+			batch = new ArrayList<ProblemMarkerInfo>(pending);
+			pending.clear();
+		}
+		update(batch, true);
+	}
+
+	/**
+	 * @param batch markers to create, unless they exist already
+	 * @param removeOutdated delete the existing markers that were not reported
+	 */
+	private void update(final List<ProblemMarkerInfo> batch, final boolean removeOutdated) {
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				if(!project.isAccessible()) {
+					return;
+				}
+				synchronized (created) {
+					if(existing == null) {
+						existing = findExistingMarkers();
+					}
+					for(ProblemMarkerInfo info: batch) {
+						MarkerKey key = getKey(info);
+						if(!existing.containsKey(key) && !created.containsKey(key)) {
+							created.put(key, createMarker(info));
+						}
+					}
+					if(removeOutdated) {
+						Set<MarkerKey> current;
+						synchronized (CMakeMarkerGenerator.this) {
+							current = new LinkedHashSet<MarkerKey>(reported);
+						}
+						for(Map.Entry<MarkerKey, IMarker> entry: existing.entrySet()) {
+							if(!current.contains(entry.getKey())) {
+								entry.getValue().delete();
+							}
+						}
+					}
+				}
+			}
+		};
+		try {
+			// markers need no scheduling rule, the run does not wait for builds or other locks
+			ResourcesPlugin.getWorkspace().run(runnable, null, IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * @return the problem markers of the project by their identity, one of each if there are duplicates
+	 */
+	private Map<MarkerKey, IMarker> findExistingMarkers() throws CoreException {
+		Map<MarkerKey, IMarker> markers = new HashMap<MarkerKey, IMarker>();
+		for(IMarker marker: project.findMarkers(ICModelMarker.C_MODEL_PROBLEM_MARKER, true, IResource.DEPTH_INFINITE)) {
+			MarkerKey key = new MarkerKey(marker.getResource(), marker.getAttribute(IMarker.LINE_NUMBER, -1), 
+					marker.getAttribute(IMarker.MESSAGE, null), marker.getAttribute(IMarker.SEVERITY, -1), 
+					marker.getAttribute(ICModelMarker.C_MODEL_MARKER_EXTERNAL_LOCATION, null));
+			if(!markers.containsKey(key)) {
+				markers.put(key, marker);
+			}
+		}
+		return markers;
+	}
+
+	private IResource getResource(ProblemMarkerInfo info) {
+		return info.file != null ? info.file : project;
+	}
+
+	private MarkerKey getKey(ProblemMarkerInfo info) {
+		return new MarkerKey(getResource(info), info.lineNumber, info.description, mapSeverity(info.severity), 
+				info.externalPath != null && !info.externalPath.isEmpty() ? info.externalPath.toOSString() : null);
+	}
+
+	private IMarker createMarker(ProblemMarkerInfo info) throws CoreException {
+		IResource resource = getResource(info);
+		IMarker marker = resource.createMarker(ICModelMarker.C_MODEL_PROBLEM_MARKER);
+		marker.setAttribute(IMarker.MESSAGE, info.description);
+		marker.setAttribute(IMarker.SEVERITY, mapSeverity(info.severity));
+		marker.setAttribute(IMarker.LINE_NUMBER, info.lineNumber);
+		if(info.variableName != null) {
+			marker.setAttribute(ICModelMarker.C_MODEL_MARKER_VARIABLE, info.variableName);
+		}
+		if(info.externalPath != null && !info.externalPath.isEmpty()) {
+			String location = info.externalPath.toOSString();
+			marker.setAttribute(ICModelMarker.C_MODEL_MARKER_EXTERNAL_LOCATION, location);
+			marker.setAttribute(IMarker.LOCATION, info.lineNumber > 0 ? location + " line " + info.lineNumber : location); //$NON-NLS-1$
+		}
+		else if(info.lineNumber == 0) {
+			marker.setAttribute(IMarker.LOCATION, " "); //$NON-NLS-1$
+		}
+		return marker;
+	}
+
+	private static int mapSeverity(int severity) {
+		switch(severity) {
+		case SEVERITY_ERROR_BUILD:
+		case SEVERITY_ERROR_RESOURCE:
+			return IMarker.SEVERITY_ERROR;
+		case SEVERITY_INFO:
+			return IMarker.SEVERITY_INFO;
+		case SEVERITY_WARNING:
+			return IMarker.SEVERITY_WARNING;
+		}
+		return IMarker.SEVERITY_ERROR;
+	}
+}
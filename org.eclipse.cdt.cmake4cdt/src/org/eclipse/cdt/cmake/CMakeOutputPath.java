@@ -27,7 +27,8 @@ public class CMakeOutputPath {
 	/* (non-Javadoc)
 	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#getBuildWorkingDir()
 	 */
-	static public IPath getPath(IProject project, String configName ) {
+	// synchronized: the value variables CMake_ProjectPath and ConfigName are global state used for the substitution
+	static synchronized public IPath getPath(IProject project, String configName ) {
 
 		IEclipsePreferences projectProperties = new ProjectScope(project).getNode("org.eclipse.cdt.cmake.scope"); //$NON-NLS-1$
 		boolean buildDirWorkspaceSettings = true;
@@ -36,42 +37,12 @@ public class CMakeOutputPath {
 		}
 
 		IStringVariableManager varMgr = VariablesPlugin.getDefault().getStringVariableManager();
-
-		// evil hack: CMake_ProjectPath is just a replacement for ${project_loc}, because ${project_loc} does not seem to be updated 
-		// when selecting multiple projects in project explorer and running CMake or building for all of them. 
-		// make sure, that current project location is stored in ${CMake_ProjectPath}
-		IPath projDir = project.getLocation();
-		IValueVariable cmakeProjectDirVar = varMgr.getValueVariable("CMake_ProjectPath"); //$NON-NLS-1$
-		if(cmakeProjectDirVar == null) {
-			IValueVariable cnVar = varMgr.newValueVariable("CMake_ProjectPath", "Dummy variable to have a variable that holds the current project's name."); //$NON-NLS-1$
-			try {
-				varMgr.addVariables( new IValueVariable[]{cnVar} );
-				cmakeProjectDirVar = varMgr.getValueVariable("CMake_ProjectPath"); //$NON-NLS-1$
-			} catch (CoreException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-		}      
-		cmakeProjectDirVar.setValue(projDir.toString());
+		setProjectPath(project);
 
 		String buildDirSetting = ""; //$NON-NLS-1$
 		if(buildDirWorkspaceSettings) {
 			String strWithVars = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_BUILDDIR);
-
-			IValueVariable configNameVar = varMgr.getValueVariable("ConfigName"); //$NON-NLS-1$
-
-			// evil hack: ConfigName should be available as Variable
-			if(configNameVar == null) {
-				IValueVariable cnVar = varMgr.newValueVariable("ConfigName", "Dummy variable to have a variable that holds the current configururation for use in build working dir."); //$NON-NLS-1$ //$NON-NLS-2$
-				try {
-					varMgr.addVariables( new IValueVariable[]{cnVar} );
-					configNameVar = varMgr.getValueVariable("ConfigName"); //$NON-NLS-1$
-				} catch (CoreException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}      
-			configNameVar.setValue( configName );
+			setConfigName(configName);
 
 			try {
 				buildDirSetting = varMgr.performStringSubstitution(strWithVars);
@@ -94,6 +65,61 @@ public class CMakeOutputPath {
 		IPath buildDir = new Path(buildDirSetting);
 		return buildDir;
 	}
+
+	/**
+	 * Sets the value variables CMake_ProjectPath, ConfigName and CMake_DESTDIR for project and configName. 
+	 * They are global, a caller that substitutes them has to hold the lock on this class until it has done so, 
+	 * so no other project or configuration changes them in between.
+	 */
+	static synchronized public void setVariables(IProject project, String configName) throws CoreException {
+		setProjectPath(project);
+		setConfigName(configName);
+
+		IStringVariableManager varMgr = VariablesPlugin.getDefault().getStringVariableManager();
+		IValueVariable destdirVar = varMgr.getValueVariable("CMake_DESTDIR"); //$NON-NLS-1$
+		String destDirStr = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_DESTDIR);
+		destdirVar.setValue(varMgr.performStringSubstitution(destDirStr));
+	}
+
+	private static void setProjectPath(IProject project) {
+		IStringVariableManager varMgr = VariablesPlugin.getDefault().getStringVariableManager();
+
+		// evil hack: CMake_ProjectPath is just a replacement for ${project_loc}, because ${project_loc} does not seem to be updated 
+		// when selecting multiple projects in project explorer and running CMake or building for all of them. 
+		// make sure, that current project location is stored in ${CMake_ProjectPath}
+		IPath projDir = project.getLocation();
+		IValueVariable cmakeProjectDirVar = varMgr.getValueVariable("CMake_ProjectPath"); //$NON-NLS-1$
+		if(cmakeProjectDirVar == null) {
+			IValueVariable cnVar = varMgr.newValueVariable("CMake_ProjectPath", "Dummy variable to have a variable that holds the current project's name."); //$NON-NLS-1$
+			try {
+				varMgr.addVariables( new IValueVariable[]{cnVar} );
+				cmakeProjectDirVar = varMgr.getValueVariable("CMake_ProjectPath"); //$NON-NLS-1$
+			} catch (CoreException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+		}      
+		cmakeProjectDirVar.setValue(projDir.toString());
+	}
+
+	private static void setConfigName(String configName) {
+		IStringVariableManager varMgr = VariablesPlugin.getDefault().getStringVariableManager();
+
+		IValueVariable configNameVar = varMgr.getValueVariable("ConfigName"); //$NON-NLS-1$
+
+		// evil hack: ConfigName should be available as Variable
+		if(configNameVar == null) {
+			IValueVariable cnVar = varMgr.newValueVariable("ConfigName", "Dummy variable to have a variable that holds the current configururation for use in build working dir."); //$NON-NLS-1$ //$NON-NLS-2$
+			try {
+				varMgr.addVariables( new IValueVariable[]{cnVar} );
+				configNameVar = varMgr.getValueVariable("ConfigName"); //$NON-NLS-1$
+			} catch (CoreException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+		}      
+		configNameVar.setValue( configName );
+	}
 }
 
 
@@ -15,6 +15,7 @@ import java.io.OutputStream;
 import java.util.Map;
 
 import org.eclipse.cdt.cmake.langset.CMakeLangSetProvider;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.model.CoreModel;
 import org.eclipse.cdt.core.resources.ACBuilder;
@@ -37,6 +38,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
@@ -50,6 +52,8 @@ import org.eclipse.ui.console.IConsoleView;
 public class CMakeProjectBuilderImpl extends ACBuilder {
 
 	public static String BUILDER_ID="org.eclipse.cdt.cmake.CMakeProjectBuilder";
+	// build argument to run cmake even if its inputs are unchanged
+	public static final String ARG_FORCE_CMAKE = "forceCMake"; //$NON-NLS-1$
 	public final String CMAKE_EXE = "cmake";
 	
 	private IProject privateProject = null;
@@ -125,8 +129,24 @@ public class CMakeProjectBuilderImpl extends ACBuilder {
 
 			IPath buildDir = mfgen.getBuildWorkingDir();
 			activeConfig.getEditableBuilder().setBuildPath(buildDir.toString());
-			// ManagedBuildManager.saveBuildInfo(project, true);
-			mstatus = mfgen.runCMake();
+			IBuilder builder = activeConfig.getEditableBuilder();
+			// -j for make or ninja from the project properties or from processors and memory
+			boolean builderChanged = BuildParallelism.apply(project, builder);
+			// follow a change of the generator, unless a build command was set by hand
+			String generator = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR);
+			String buildCmd = CMakeInfo.getBuildCommand(generator);
+			if(!buildCmd.equals(builder.getCommand()) && CMakeInfo.isDefaultBuildCommand(builder.getCommand())) {
+				builder.setCommand(buildCmd);
+				builderChanged = true;
+			}
+			if(builderChanged) {
+				// the jobs applied are remembered in the project properties, the builder has to keep them too
+				ManagedBuildManager.saveBuildInfo(project, true);
+			}
+			// incremental and auto builds only reconfigure if the inputs of cmake have changed
+			boolean force = kind == IncrementalProjectBuilder.FULL_BUILD 
+					|| (args != null && Boolean.parseBoolean(args.get(ARG_FORCE_CMAKE)));
+			mstatus = mfgen.runCMake(force);
 		}
 		catch(CoreException ce) {
 			logToConsole(cmakeConsole, ce.getStatus());
@@ -137,6 +157,11 @@ public class CMakeProjectBuilderImpl extends ACBuilder {
 				throw new OperationCanceledException(mstatus.getMessage());
 			}
 			else {
+				// make or ninja runs next, also if cmake was skipped as up to date
+				IBuilder builder = activeConfig.getBuilder();
+				int jobs = builder.isParallelBuildOn() ? builder.getParallelizationNum() : 1;
+				logToConsole(cmakeConsole, new Status(IStatus.INFO, Activator.PLUGIN_ID, 
+						"Building '" + project.getName() + "' [" + activeConfig.getName() + "] with -j" + jobs)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 				CMakeLangSetProvider lsp = Activator.getDefault().getLangSetProvider();
 				
 				ICProjectDescription projectDescription = CoreModel.getDefault().getProjectDescription(project, true);
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.cdt.cmake.ui.Messages;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICProjectDescription;
@@ -37,7 +38,6 @@ import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.cdt.managedbuilder.internal.core.ManagedBuildInfo;
 import org.eclipse.cdt.managedbuilder.internal.core.ManagedProject;
 import org.eclipse.cdt.managedbuilder.internal.core.ToolChain;
-import org.eclipse.cdt.utils.Platform;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
@@ -216,17 +216,9 @@ public class CMakeProjectGenerator {
 				managedProject, (ToolChain) cmakeToolChain, configId, "debug");
 		IToolChain newToolChain = newConfig.getToolChain();
 
-		switch (Platform.getOS()) 
-		{
-			case "win32": {
-				newConfig.getEditableBuilder().setCommand("mingw32-make.exe");
-				break;
-			}
-			default: {
-				newConfig.getEditableBuilder().setCommand("make");
-				break;
-			}
-		}
+		// the build tool that goes with the selected generator, e.g. make or ninja
+		String generator = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.P_CMAKE_GENERATOR);
+		newConfig.getEditableBuilder().setCommand(CMakeInfo.getBuildCommand(generator));
 
 		
 		CConfigurationData data = newConfig.getConfigurationData();
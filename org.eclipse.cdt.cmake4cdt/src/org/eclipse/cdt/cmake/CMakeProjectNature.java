@@ -18,6 +18,7 @@ import org.eclipse.core.resources.ICommand;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.resources.IProjectNature;
+import org.eclipse.core.resources.IResourceRuleFactory;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceDescription;
 import org.eclipse.core.resources.IWorkspaceRunnable;
@@ -30,6 +31,7 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
 
 public class CMakeProjectNature implements IProjectNature {
 
@@ -86,7 +88,9 @@ public class CMakeProjectNature implements IProjectNature {
 		if(checkEquals(commands,getBuildCommandsList(description, commands))){
 			return;
 		}
-		final ISchedulingRule rule = ResourcesPlugin.getWorkspace().getRoot();
+		// the project description and .cproject are changed, nothing outside of the project
+		IResourceRuleFactory ruleFactory = ResourcesPlugin.getWorkspace().getRuleFactory();
+		final ISchedulingRule rule = MultiRule.combine(project, ruleFactory.modifyRule(project));
 		final IProject proj = project;
 
 		Job backgroundJob = new Job("CMake Set Project Description") {
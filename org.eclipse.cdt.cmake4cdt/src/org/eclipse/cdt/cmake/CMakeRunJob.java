@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.cdt.managedbuilder.core.IManagedBuildInfo;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
+import org.eclipse.cdt.ui.CUIPlugin;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+/**
+ * Runs CMake for one project, outside of a workspace build.
+ *
+ * Each project gets a job of its own, so several projects are configured in parallel. 
+ * Jobs are started through {@link #schedule(Collection, boolean)}, which never queues two for 
+ * the same project. At most {@link PreferenceConstants#P_CMAKE_MAX_PARALLEL_RUNS} of them run 
+ * at a time, together with the jobs of {@link ArchMatrixBuild} ({@link CMakeRunLimiter}).
+ *
+ * Each job holds its project as scheduling rule, and the project of the build folder, if that is 
+ * another one: the build changes the builder settings of the project and the contents of the build 
+ * folder, which must not happen during a workspace build or another job changing the same project. 
+ * Runs for different projects still go on in parallel.
+ */
+public class CMakeRunJob extends Job {
+
+	public static final Object FAMILY = CMakeRunJob.class;
+
+	// projects with a queued or running job
+	private static final Set<IProject> pending = new HashSet<IProject>();
+
+	private static final IJobChangeListener doneListener = new JobChangeAdapter() {
+		@Override
+		public void done(IJobChangeEvent event) {
+			synchronized (pending) {
+				pending.remove(((CMakeRunJob)event.getJob()).project);
+			}
+		}
+	};
+
+	private final IProject project;
+	private final boolean force;
+
+	private CMakeRunJob(IProject project, boolean force) {
+		super("Running CMake for '" + project.getName() + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		this.project = project;
+		this.force = force;
+		setRule(getRule(project));
+		addJobChangeListener(doneListener);
+	}
+
+	/**
+	 * @return the project, combined with the project holding the build folder of the active configuration, 
+	 *         if that is another one
+	 */
+	private static ISchedulingRule getRule(IProject project) {
+		ISchedulingRule rule = project;
+		IManagedBuildInfo buildInfo = ManagedBuildManager.getBuildInfo(project);
+		if(buildInfo != null && buildInfo.getConfigurationName() != null) {
+			IPath buildDir = CMakeOutputPath.getPath(project, buildInfo.getConfigurationName());
+			IContainer buildFolder = ResourcesPlugin.getWorkspace().getRoot().getContainerForLocation(buildDir);
+			if(buildFolder != null && buildFolder.getProject() != null && !buildFolder.getProject().equals(project)) {
+				rule = MultiRule.combine(rule, buildFolder.getProject());
+			}
+		}
+		return rule;
+	}
+
+	/**
+	 * Queues a CMake run for each project that has none queued or running yet.
+	 *
+	 * @param force run cmake even if its inputs are unchanged
+	 */
+	public static void schedule(Collection<IProject> projects, boolean force) {
+		List<CMakeRunJob> jobs = new ArrayList<CMakeRunJob>();
+		synchronized (pending) {
+			for(IProject project: projects) {
+				if(pending.add(project)) {
+					jobs.add(new CMakeRunJob(project, force));
+				}
+			}
+		}
+		CMakeRunLimiter.schedule(jobs);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		if(!project.isOpen()) {
+			return Status.OK_STATUS;
+		}
+		IManagedBuildInfo buildInfo = ManagedBuildManager.getBuildInfo(project);
+		if(buildInfo == null) {
+			return Status.OK_STATUS;
+		}
+		CUIPlugin.getDefault().startGlobalConsole();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(CMakeProjectBuilderImpl.ARG_FORCE_CMAKE, Boolean.toString(force));
+		try {
+			new CMakeProjectBuilderImpl(project, buildInfo).build(IncrementalProjectBuilder.INCREMENTAL_BUILD, args, monitor);
+		} catch (OperationCanceledException e) {
+			// cmake has failed, details are in the CMake console
+			return new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage());
+		} catch (CoreException e) {
+			return e.getStatus();
+		}
+		return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+	 */
+	@Override
+	public boolean belongsTo(Object family) {
+		return family == FAMILY;
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+/**
+ * Keeps at most {@link PreferenceConstants#P_CMAKE_MAX_PARALLEL_RUNS} jobs running cmake at a time,
+ * those of {@link CMakeRunJob} and of {@link ArchMatrixBuild} together.
+ *
+ * Jobs are scheduled in the order they were queued, each as soon as a slot is free.
+ * A job's slot is freed when it is done.
+ */
+class CMakeRunLimiter {
+
+	// jobs waiting for a free slot
+	private static final LinkedList<Job> queue = new LinkedList<Job>();
+	private static int running = 0;
+
+	private static final IJobChangeListener doneListener = new JobChangeAdapter() {
+		@Override
+		public void done(IJobChangeEvent event) {
+			event.getJob().removeJobChangeListener(this);
+			synchronized (queue) {
+				running--;
+			}
+			startNext();
+		}
+	};
+
+	private CMakeRunLimiter() {
+	}
+
+	/**
+	 * Queues jobs and schedules as many as there are free slots.
+	 */
+	static void schedule(List<? extends Job> jobs) {
+		synchronized (queue) {
+			queue.addAll(jobs);
+		}
+		startNext();
+	}
+
+	private static void startNext() {
+		List<Job> jobs = new ArrayList<Job>();
+		synchronized (queue) {
+			int maxRunning = Math.max(1, Activator.getDefault().getPreferenceStore().getInt(PreferenceConstants.P_CMAKE_MAX_PARALLEL_RUNS));
+			while(running < maxRunning && !queue.isEmpty()) {
+				running++;
+				jobs.add(queue.removeFirst());
+			}
+		}
+		for(Job job: jobs) {
+			job.addJobChangeListener(doneListener);
+			job.schedule();
+		}
+	}
+}
@@ -15,53 +15,111 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.cdt.cmake.langset.CMakeLangSetProvider;
 import org.eclipse.cdt.cmake.langset.CompileCmdsHandler;
+import org.eclipse.cdt.cmake.langset.CompileCmdsPool;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.settings.model.CProjectDescriptionEvent;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.cdt.core.settings.model.ICProjectDescriptionListener;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.runtime.IPath;
 import org.json.JSONException;
 import org.osgi.service.prefs.BackingStoreException;
 
-public class CMakeSettings implements PropertyChangeListener { 
+public class CMakeSettings implements PropertyChangeListener, IResourceChangeListener, ICProjectDescriptionListener { 
+
+	/**
+	 * Property fired after a compile_commands.json was (re-)parsed. The new value is the {@link CompileCmdsHandler}.
+	 */
+	public static final String PROP_COMPILE_CMDS = "compileCmds"; //$NON-NLS-1$
+
+	// access ordered, so iteration starts with the least recently used entry
+	private LinkedHashMap<String, CompileCmdsHandler> mCompCmds = new LinkedHashMap<String, CompileCmdsHandler>(16, 0.75f, true);
+
+	// keys of handlers in mCompCmds that read another compile_commands.json than the one of the current snapshot
+	private Set<String> mStaleKeys = new HashSet<String>();
+	// ConfigureSnapshot.getGeneration() when mStaleKeys was last brought up to date
+	private int mSnapshotGeneration = ConfigureSnapshot.getGeneration();
+
+	// per project: strings shared by the compile databases of all its build configurations
+	private HashMap<String, CompileCmdsPool> mPools = new HashMap<String, CompileCmdsPool>();
+
+	// handlers whose compile_command.json is being parsed right now, not yet in mCompCmds
+	private HashMap<String, CompileCmdsHandler> mLoading = new HashMap<String, CompileCmdsHandler>();
+
+	/**
+	 * Registers this settings store for project close/delete and build configuration changes,
+	 * so that parsed compile databases and persisted language settings of vanished projects and
+	 * configurations are dropped.
+	 */
+	public void startup(IWorkspace workspace) {
+		workspace.addResourceChangeListener(this, IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+		CoreModel.getDefault().addCProjectDescriptionListener(this, CProjectDescriptionEvent.APPLIED);
+		CMakeLangSetProvider.deleteOrphanedEntryStores();
+	}
+
+	public void shutdown(IWorkspace workspace) {
+		CoreModel.getDefault().removeCProjectDescriptionListener(this);
+		workspace.removeResourceChangeListener(this);
+		synchronized (this) {
+			mCompCmds.clear();
+			mPools.clear();
+		}
+	}
 
-	private HashMap<String, CompileCmdsHandler> mCompCmds = new HashMap<String, CompileCmdsHandler>();
-	
 	public CompileCmdsHandler getCompileCmds(IProject project, String configName) {
 		String projectName = project.getName();
+		String key = genKey(projectName, configName);
 		CompileCmdsHandler cmdHdl = null;
 
-		try {
-			if(!mCompCmds.containsKey(genKey(projectName, configName) )) {
-				// for this project + build config compile_command.json was not evaluated yet 
-				IPath outputPath = CMakeOutputPath.getPath(project, configName);
-				String filename = outputPath.append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toString();
-	
-				try {
-					cmdHdl = new CompileCmdsHandler(project, configName, filename);
-					// only setCompileCmds() if the file compile_command.json was there an could be parsed 
-					cmdHdl.parseCMakeCompileCommands();
-					cmdHdl.hasChanged(true);
-					setCompileCmds(cmdHdl);
-				}
-				catch(FileNotFoundException fex) {
-					System.out.printf("Could not open json file: %s", fex.getMessage());
-				}
-				catch(JSONException jex) {
-					System.out.printf("JSONException: %s", jex.getMessage());
-				}
-				finally {
-					
+		synchronized (this) {
+			updateStaleKeys();
+			cmdHdl = mCompCmds.get(key);
+			if(cmdHdl != null && mStaleKeys.contains(key)) {
+				// a snapshot of the configure results was published or dropped since. The current 
+				// handler serves until the other file is parsed
+				cmdHdl = null;
+			}
+			if(cmdHdl == null) {
+				// for this project + build config compile_command.json was not evaluated yet. 
+				// Another thread might be loading it already, share its handler in that case.
+				cmdHdl = mLoading.get(key);
+				if(cmdHdl == null) {
+					IPath outputPath = CMakeOutputPath.getPath(project, configName);
+					String filename = ConfigureSnapshot.getCompileCommands(outputPath).getPath();
+					cmdHdl = new CompileCmdsHandler(project, configName, filename, getPool(projectName));
+					mLoading.put(key, cmdHdl);
 				}
 			}
-			else {
-				// compile_command.json was evaluated before -> check if it has changed since then
-				cmdHdl = mCompCmds.get(genKey(projectName, configName));
-				if(cmdHdl.hasChanged(false)) {
+		}
+
+		// parse outside of the settings lock, so compile databases of different projects and 
+		// configurations can be loaded at the same time
+		boolean parsed = false;
+		synchronized (cmdHdl) {
+			try {
+				// a handler that was parsed before is only parsed again if compile_command.json has changed since then
+				if(!cmdHdl.isParsed() || cmdHdl.hasChanged(false)) {
 					try {
 						cmdHdl.parseCMakeCompileCommands();
 						cmdHdl.hasChanged(true);
-						setCompileCmds(cmdHdl);
+						parsed = true;
 					}
 					catch(FileNotFoundException fex) {
 						System.out.printf("Could not open json file: %s", fex.getMessage());
@@ -69,20 +127,191 @@ public class CMakeSettings implements PropertyChangeListener {
 					catch(JSONException jex) {
 						System.out.printf("JSONException: %s", jex.getMessage());
 					}
-					finally {
-						
-					}
 				}
 			}
+			catch(BackingStoreException be) {
+				be.printStackTrace();
+			}
 		}
-		catch(BackingStoreException be) {
-			be.printStackTrace();
+
+		// looked up before taking the settings lock: CDT calls evictConfigsExcept() with its own locks held
+		Map<String, String> activeConfigs = parsed ? getActiveConfigs(project) : null;
+
+		CompileCmdsHandler result = null;
+		synchronized (this) {
+			mLoading.remove(key);
+			// only setCompileCmds() if the file compile_command.json was there an could be parsed 
+			if(parsed) {
+				setCompileCmds(cmdHdl, activeConfigs);
+			}
+			result = mCompCmds.get(key);
+		}
+		if(parsed) {
+			propertyChangeSupport.firePropertyChange(PROP_COMPILE_CMDS, null, cmdHdl);
 		}
-		return mCompCmds.get(genKey(projectName, configName));
+		return result;
 	}
 	
-	private void setCompileCmds(CompileCmdsHandler ccmds) {
-		mCompCmds.put(genKey(ccmds.getProjectName(), ccmds.getConfigName()), ccmds);
+	private void setCompileCmds(CompileCmdsHandler ccmds, Map<String, String> activeConfigs) {
+		String key = genKey(ccmds.getProjectName(), ccmds.getConfigName());
+		mCompCmds.put(key, ccmds);
+		// a snapshot may have been published while it was parsed
+		if(ConfigureSnapshot.isCurrent(ccmds.getFilename())) {
+			mStaleKeys.remove(key);
+		}
+		else {
+			mStaleKeys.add(key);
+		}
+		trimInactiveConfigs(key, activeConfigs);
+	}
+
+	/**
+	 * Checks which handlers read a compile_commands.json that is no longer the current one, 
+	 * only after a snapshot was published or dropped, not on every lookup.
+	 */
+	private void updateStaleKeys() {
+		int generation = ConfigureSnapshot.getGeneration();
+		if(generation == mSnapshotGeneration) {
+			return;
+		}
+		mSnapshotGeneration = generation;
+		mStaleKeys.clear();
+		for(Map.Entry<String, CompileCmdsHandler> entry: mCompCmds.entrySet()) {
+			if(!ConfigureSnapshot.isCurrent(entry.getValue().getFilename())) {
+				mStaleKeys.add(entry.getKey());
+			}
+		}
+	}
+
+	private CompileCmdsPool getPool(String projectName) {
+		CompileCmdsPool pool = mPools.get(projectName);
+		if(pool == null) {
+			pool = new CompileCmdsPool();
+			mPools.put(projectName, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * Drops the shared pool of a project as soon as none of its configurations is cached any more.
+	 * Strings of replaced compile databases leave the pool by themselves, it holds them weakly.
+	 */
+	private void dropUnusedPools() {
+		Set<String> usedProjects = new HashSet<String>();
+		for(CompileCmdsHandler cmdHdl: mCompCmds.values()) {
+			usedProjects.add(cmdHdl.getProjectName());
+		}
+		for(CompileCmdsHandler cmdHdl: mLoading.values()) {
+			usedProjects.add(cmdHdl.getProjectName());
+		}
+		mPools.keySet().retainAll(usedProjects);
+	}
+
+	/**
+	 * Drops all parsed compile databases of the given project.
+	 */
+	public synchronized void evictProject(String projectName) {
+		String prefix = genKey(projectName, "");
+		Iterator<String> it = mCompCmds.keySet().iterator();
+		while(it.hasNext()) {
+			if(it.next().startsWith(prefix)) {
+				it.remove();
+			}
+		}
+		mPools.remove(projectName);
+	}
+
+	/**
+	 * Drops the parsed compile databases of all configurations of the given project 
+	 * that are not contained in <code>keepConfigs</code>.
+	 */
+	public synchronized void evictConfigsExcept(String projectName, Set<String> keepConfigs) {
+		Iterator<CompileCmdsHandler> it = mCompCmds.values().iterator();
+		while(it.hasNext()) {
+			CompileCmdsHandler cmdHdl = it.next();
+			if(cmdHdl.getProjectName().equals(projectName) && !keepConfigs.contains(cmdHdl.getConfigName())) {
+				it.remove();
+			}
+		}
+		dropUnusedPools();
+	}
+
+	/**
+	 * Applies the optional LRU policy: as long as the compile units held for configurations 
+	 * that are not the active one of their project exceed the configured limit, 
+	 * the least recently used of those entries are dropped. A limit of 0 disables the policy. 
+	 * The entry for <code>requestedKey</code> is never dropped, its caller is about to use it.
+	 * 
+	 * @param activeConfigs the active configuration per project name, see {@link #getActiveConfigs(IProject)}. 
+	 *        Projects missing in it were added since, their configurations are kept
+	 */
+	private void trimInactiveConfigs(String requestedKey, Map<String, String> activeConfigs) {
+		int limit = getCacheLimit();
+		if(limit <= 0) {
+			return;
+		}
+
+		List<String> inactiveKeys = new ArrayList<String>();
+		int inactiveUnits = 0;
+		for(Map.Entry<String, CompileCmdsHandler> entry: mCompCmds.entrySet()) {
+			CompileCmdsHandler cmdHdl = entry.getValue();
+			String projectName = cmdHdl.getProjectName();
+			if(!entry.getKey().equals(requestedKey) && activeConfigs.containsKey(projectName) 
+					&& !cmdHdl.getConfigName().equals(activeConfigs.get(projectName))) {
+				inactiveKeys.add(entry.getKey());
+				inactiveUnits += cmdHdl.getSources().size();
+			}
+		}
+
+		// inactiveKeys is ordered from least to most recently used
+		for(String key: inactiveKeys) {
+			if(inactiveUnits <= limit) {
+				break;
+			}
+			CompileCmdsHandler cmdHdl = mCompCmds.remove(key);
+			inactiveUnits -= cmdHdl.getSources().size();
+		}
+		dropUnusedPools();
+	}
+
+	private int getCacheLimit() {
+		return Activator.getDefault().getPreferenceStore().getInt(PreferenceConstants.P_COMPILE_CMDS_CACHE_LIMIT);
+	}
+
+	/**
+	 * Must be called without holding the settings lock, it reads the project descriptions.
+	 * 
+	 * @return the name of the active configuration per name of <code>project</code> and of the 
+	 *         projects with cached compile databases, <code>null</code> for a closed project. 
+	 *         Empty if the LRU policy is disabled
+	 */
+	private Map<String, String> getActiveConfigs(IProject project) {
+		Map<String, String> activeConfigs = new HashMap<String, String>();
+		if(getCacheLimit() <= 0) {
+			return activeConfigs;
+		}
+		Set<IProject> projects = new HashSet<IProject>();
+		projects.add(project);
+		synchronized (this) {
+			for(CompileCmdsHandler cmdHdl: mCompCmds.values()) {
+				projects.add(cmdHdl.getProject());
+			}
+		}
+		for(IProject p: projects) {
+			activeConfigs.put(p.getName(), getActiveConfigName(p));
+		}
+		return activeConfigs;
+	}
+
+	private String getActiveConfigName(IProject project) {
+		if(!project.isOpen()) {
+			return null;
+		}
+		ICProjectDescription projDesc = CoreModel.getDefault().getProjectDescription(project, false);
+		if(projDesc == null || projDesc.getActiveConfiguration() == null) {
+			return null;
+		}
+		return projDesc.getActiveConfiguration().getName();
 	}
 
 	private String genKey(String projectName, String buildConfig) {
@@ -100,6 +329,10 @@ public class CMakeSettings implements PropertyChangeListener {
 		propertyChangeSupport.removePropertyChangeListener(listener);
 	}
 
+	public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+		propertyChangeSupport.removePropertyChangeListener(propertyName, listener);
+	}
+
 	/* (non-Javadoc)
 	 * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
 	 */
@@ -108,4 +341,50 @@ public class CMakeSettings implements PropertyChangeListener {
 		// TODO Auto-generated method stub
 	}
 
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent)
+	 */
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResource rc = event.getResource();
+		if(rc instanceof IProject) {
+			evictProject(rc.getName());
+			CMakeLangSetProvider provider = Activator.getDefault().getLangSetProvider();
+			if(event.getType() == IResourceChangeEvent.PRE_DELETE && provider != null) {
+				provider.dropEntryStores(rc.getName(), null);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.core.settings.model.ICProjectDescriptionListener#handleEvent(org.eclipse.cdt.core.settings.model.CProjectDescriptionEvent)
+	 */
+	@Override
+	public void handleEvent(CProjectDescriptionEvent event) {
+		IProject project = event.getProject();
+		if(project == null) {
+			return;
+		}
+		ICProjectDescription newDesc = event.getNewCProjectDescription();
+		CMakeLangSetProvider provider = Activator.getDefault().getLangSetProvider();
+		if(newDesc == null) {
+			// description removed, e.g. CDT nature removed from the project
+			evictProject(project.getName());
+			if(provider != null) {
+				provider.dropEntryStores(project.getName(), null);
+			}
+			return;
+		}
+		Set<String> configNames = new HashSet<String>();
+		Set<String> configIds = new HashSet<String>();
+		for(ICConfigurationDescription cfgDesc: newDesc.getConfigurations()) {
+			configNames.add(cfgDesc.getName());
+			configIds.add(cfgDesc.getId());
+		}
+		evictConfigsExcept(project.getName(), configNames);
+		if(provider != null) {
+			provider.dropEntryStores(project.getName(), configIds);
+		}
+	}
+
 }
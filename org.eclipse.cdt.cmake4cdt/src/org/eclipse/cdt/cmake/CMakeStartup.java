@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import org.eclipse.cdt.cmake.langset.CompileCmdsPrewarmJob;
+import org.eclipse.ui.IStartup;
+
+/**
+ * Starts background work that should not wait for the first use of the plug-in.
+ */
+public class CMakeStartup implements IStartup {
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.IStartup#earlyStartup()
+	 */
+	@Override
+	public void earlyStartup() {
+		new CompileCmdsPrewarmJob().schedule();
+	}
+}
@@ -12,11 +12,14 @@
 package org.eclipse.cdt.cmake;
 
 import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.cdt.core.CommandLauncher;
 import org.eclipse.cdt.core.ICommandLauncher;
 import org.eclipse.cdt.internal.core.Messages;
 import org.eclipse.cdt.internal.core.ProcessClosure;
+import org.eclipse.cdt.utils.spawner.Spawner;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 /**
@@ -25,6 +28,12 @@ import org.eclipse.core.runtime.IProgressMonitor;
  */
 public class CommandLauncherRC extends CommandLauncher implements ICommandLauncher {
 
+	// how often a running process checks the monitor for cancellation. The end of the process
+	// is not polled, it ends the wait at once.
+	private static final long CANCEL_POLL_MS = 20;
+	// time given to the process group to stop on SIGTERM, before it is killed
+	private static final long TERMINATE_GRACE_MS = 2000;
+
 	public int exitValue() {
 		return fProcess.exitValue();
 	};
@@ -42,25 +51,58 @@ public class CommandLauncherRC extends CommandLauncher implements ICommandLaunch
 			return ICommandLauncher.ILLEGAL_COMMAND;
 		}
 
-		ProcessClosure closure = new ProcessClosure(fProcess, output, err);
-		closure.runNonBlocking();
-		while (!monitor.isCanceled() && closure.isAlive()) {
+		// error parsers and console run on a thread of their own, so they cannot hold up the process
+		ParsingQueue parsingQueue = new ParsingQueue(output, err);
+		output = parsingQueue.getOutputStream();
+		err = parsingQueue.getErrorStream();
+
+		// progress of ninja and make as work of the monitor. 
+		// A nested beginTask() is ignored, if the caller has begun the task already
+		monitor.beginTask("", BuildProgressParser.TOTAL_WORK); //$NON-NLS-1$
+		if(output != null) {
+			output = new BuildProgressParser(output, monitor);
+		}
+
+		// runBlocking() returns after the process has exited and both streams are read to the end
+		final ProcessClosure closure = new ProcessClosure(fProcess, output, err);
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread("CMake process waiter") { //$NON-NLS-1$
+			@Override
+			public void run() {
+				try {
+					closure.runBlocking();
+				}
+				finally {
+					done.countDown();
+				}
+			}
+		};
+		waiter.setDaemon(true);
+		waiter.start();
+		boolean interrupted = false;
+		while (!monitor.isCanceled() && !interrupted && done.getCount() > 0) {
 			try {
-				Thread.sleep(DELAY);
-			} catch (InterruptedException ie) {
-				// ignore
+				done.await(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
 			}
 		}
 
 		int state = ICommandLauncher.OK;
 
-		// Operation canceled by the user, terminate abnormally.
-		if (monitor.isCanceled()) {
-			closure.terminate();
+		// Operation canceled by the user or the thread interrupted, terminate abnormally.
+		if (done.getCount() > 0) {
+			terminate(closure, done);
+			parsingQueue.close();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 			state = ICommandLauncher.COMMAND_CANCELED;
 			setErrorMessage(Messages.CommandLauncher_CommandCancelled);
+			return state;
 		}
 
+		parsingQueue.close();
 		try {
 			state = fProcess.waitFor();
 		} catch (InterruptedException e) {
@@ -69,4 +111,22 @@ public class CommandLauncherRC extends CommandLauncher implements ICommandLaunch
 		return state;
 	}
 
+	/**
+	 * Stops the process and the processes it has started. A {@link Spawner} signals the whole
+	 * process group, first with SIGTERM so make, ninja and cmake can stop their children, then 
+	 * with SIGKILL. Other processes can only be destroyed themselves.
+	 */
+	private void terminate(ProcessClosure closure, CountDownLatch done) {
+		if (fProcess instanceof Spawner) {
+			((Spawner)fProcess).terminate();
+			try {
+				done.await(TERMINATE_GRACE_MS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (done.getCount() > 0) {
+			closure.terminate();
+		}
+	}
 }
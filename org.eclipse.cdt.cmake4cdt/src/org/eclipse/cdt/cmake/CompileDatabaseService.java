@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.cdt.cmake.langset.CompileCmdsHandler;
+import org.eclipse.cdt.cmake.langset.CompileCmdsIndex;
+import org.eclipse.cdt.cmake.langset.IBuildCommandParserEx.CompileUnitInfo;
+import org.eclipse.core.resources.IProject;
+
+/**
+ * {@link ICompileDatabase} implementation on top of the compile databases cached in {@link CMakeSettings}.
+ */
+class CompileDatabaseService implements ICompileDatabase, PropertyChangeListener {
+
+	private final CMakeSettings settings;
+	private final List<ICompileDatabaseListener> listeners = new CopyOnWriteArrayList<ICompileDatabaseListener>();
+
+	CompileDatabaseService(CMakeSettings settings) {
+		this.settings = settings;
+		settings.addPropertyChangeListener(CMakeSettings.PROP_COMPILE_CMDS, this);
+	}
+
+	void dispose() {
+		settings.removePropertyChangeListener(CMakeSettings.PROP_COMPILE_CMDS, this);
+		listeners.clear();
+	}
+
+	private CompileCmdsIndex getIndex(IProject project, String configName) {
+		CompileCmdsHandler cmdHdl = settings.getCompileCmds(project, configName);
+		return cmdHdl == null ? null : cmdHdl.getIndex();
+	}
+
+	@Override
+	public List<String> getFiles(IProject project, String configName) {
+		CompileCmdsIndex index = getIndex(project, configName);
+		return index == null ? Collections.<String>emptyList() : index.getFiles();
+	}
+
+	@Override
+	public List<String> getFlags(IProject project, String configName, String file) {
+		CompileCmdsIndex index = getIndex(project, configName);
+		CompileUnitInfo cu = index == null ? null : index.getUnit(file);
+		if(cu == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(cu.getCmdArgs()));
+	}
+
+	@Override
+	public List<String> getFilesInDirectory(IProject project, String configName, String directory) {
+		CompileCmdsIndex index = getIndex(project, configName);
+		return index == null ? Collections.<String>emptyList() : index.getFilesInDirectory(directory);
+	}
+
+	@Override
+	public List<String> getFilesWithFlag(IProject project, String configName, String flag) {
+		CompileCmdsIndex index = getIndex(project, configName);
+		return index == null ? Collections.<String>emptyList() : index.getFilesWithFlag(flag);
+	}
+
+	@Override
+	public List<String> getFilesWithMacro(IProject project, String configName, String macro) {
+		CompileCmdsIndex index = getIndex(project, configName);
+		return index == null ? Collections.<String>emptyList() : index.getFilesWithMacro(macro);
+	}
+
+	@Override
+	public void addChangeListener(ICompileDatabaseListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeChangeListener(ICompileDatabaseListener listener) {
+		listeners.remove(listener);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.beans.PropertyChangeListener#propertyChange(java.beans.PropertyChangeEvent)
+	 */
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		CompileCmdsHandler cmdHdl = (CompileCmdsHandler) evt.getNewValue();
+		for(ICompileDatabaseListener listener: listeners) {
+			try {
+				listener.compileDatabaseChanged(cmdHdl.getProject(), cmdHdl.getConfigName());
+			}
+			catch(RuntimeException e) {
+				Activator.log(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.cdt.cmake.langset.CompileCmdsHandler;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Results of the last successful configure in a build dir, kept apart from the files cmake
+ * rewrites while it runs: compile_commands.json and the replies of the file API.
+ *
+ * If {@link PreferenceConstants#P_STAGED_CONFIGURE} is set, the results are copied to a snapshot dir
+ * after each successful configure, and the language settings are read from there
+ * ({@link #getCompileCommands(IPath)}). Every file is written under a temporary name and
+ * renamed into place, compile_commands.json last, so a reader sees either the old or the new
+ * results, never a half-written file, and never has to wait for cmake. A failed configure
+ * publishes nothing, the old results stay, and as they are unchanged nothing is parsed or indexed again.
+ *
+ * The reply files of the file API carry a hash of their contents in their names, so unchanged
+ * ones are not copied again. Other files are not replaced if their contents are unchanged, and 
+ * copies keep the modification time of their source, so an unchanged compile_commands.json is 
+ * not parsed again. Files of the previous snapshot are kept until the next one, for
+ * readers that were still following its index when it was replaced.
+ */
+public class ConfigureSnapshot {
+
+	private static final String SNAPSHOT_DIR = "CMakeFiles/org.eclipse.cdt.cmake.published"; //$NON-NLS-1$
+	private static final String REPLY_DIR = ".cmake/api/v1/reply"; //$NON-NLS-1$
+	// names of the reply files of the last snapshot
+	private static final String MANIFEST = "reply-files.txt"; //$NON-NLS-1$
+	private static final String TMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	// counts the snapshots published or dropped, see getGeneration()
+	private static final AtomicInteger generation = new AtomicInteger();
+
+	public static boolean isEnabled() {
+		return Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_STAGED_CONFIGURE);
+	}
+
+	/**
+	 * @return the compile_commands.json to read for buildDir, the one of the snapshot if there is one
+	 */
+	public static File getCompileCommands(IPath buildDir) {
+		File published = buildDir.append(SNAPSHOT_DIR).append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toFile();
+		return published.isFile() ? published : buildDir.append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toFile();
+	}
+
+	/**
+	 * @return a number that changes whenever a snapshot is published or dropped, so callers only 
+	 *         have to check {@link #isCurrent(String)} again after it has changed
+	 */
+	public static int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * @param compileCommands a file returned by {@link #getCompileCommands(IPath)}
+	 * @return false, if a snapshot has been published or dropped since compileCommands was returned
+	 */
+	public static boolean isCurrent(String compileCommands) {
+		IPath dir = new Path(compileCommands).removeLastSegments(1);
+		IPath snapshotDir = new Path(SNAPSHOT_DIR);
+		if(dir.segmentCount() > snapshotDir.segmentCount() && dir.removeFirstSegments(dir.segmentCount() - snapshotDir.segmentCount()).equals(snapshotDir)) {
+			dir = dir.removeLastSegments(snapshotDir.segmentCount());
+		}
+		return getCompileCommands(dir).getPath().equals(new File(compileCommands).getPath());
+	}
+
+	/**
+	 * Called before cmake runs in buildDir. With the option set, the results of an earlier
+	 * configure become the snapshot, if there is none yet. Without it, the snapshot is dropped.
+	 */
+	public static void prepare(IPath buildDir) {
+		File snapshot = buildDir.append(SNAPSHOT_DIR).toFile();
+		if(!isEnabled()) {
+			if(snapshot.exists()) {
+				delete(snapshot);
+				generation.incrementAndGet();
+			}
+		}
+		else if(!new File(snapshot, CompileCmdsHandler.COMPILE_CMDS_FILENAME).isFile()
+				&& buildDir.append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toFile().isFile()) {
+			publish(buildDir);
+		}
+	}
+
+	/**
+	 * Makes the results of the configure that has just succeeded in buildDir the snapshot.
+	 */
+	public static void publish(IPath buildDir) {
+		if(!isEnabled()) {
+			return;
+		}
+		File compileCommands = buildDir.append(CompileCmdsHandler.COMPILE_CMDS_FILENAME).toFile();
+		if(!compileCommands.isFile()) {
+			return;
+		}
+		File snapshot = buildDir.append(SNAPSHOT_DIR).toFile();
+		File replyDir = buildDir.append(REPLY_DIR).toFile();
+		File snapshotReplyDir = new File(snapshot, REPLY_DIR);
+		try {
+			snapshotReplyDir.mkdirs();
+			Set<String> previous = readManifest(snapshot);
+
+			// content files first, then the index referring to them
+			List<String> current = new ArrayList<String>();
+			String[] names = replyDir.list();
+			if(names != null) {
+				Arrays.sort(names);
+				String index = null;
+				for(String name: names) {
+					if(name.startsWith("index-")) { //$NON-NLS-1$
+						index = name;
+					}
+					else {
+						current.add(name);
+						if(!new File(snapshotReplyDir, name).isFile()) {
+							copy(new File(replyDir, name), new File(snapshotReplyDir, name));
+						}
+					}
+				}
+				if(index != null) {
+					current.add(index);
+					copy(new File(replyDir, index), new File(snapshotReplyDir, index));
+				}
+			}
+			copy(compileCommands, new File(snapshot, CompileCmdsHandler.COMPILE_CMDS_FILENAME));
+			generation.incrementAndGet();
+			writeManifest(snapshot, current);
+
+			// what neither the new nor the previous snapshot refers to
+			Set<String> keep = new HashSet<String>(current);
+			keep.addAll(previous);
+			String[] published = snapshotReplyDir.list();
+			for(int i = 0; published != null && i < published.length; i++) {
+				if(!keep.contains(published[i])) {
+					new File(snapshotReplyDir, published[i]).delete();
+				}
+			}
+		} catch (IOException e) {
+			// the old snapshot may be missing some reply files now, the next configure completes it
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * Replaces <code>to</code> by a copy of <code>from</code> with the same modification time, 
+	 * unless their contents are the same already.
+	 */
+	private static void copy(File from, File to) throws IOException {
+		if(hasSameContents(from, to)) {
+			return;
+		}
+		File tmp = new File(to.getPath() + TMP_SUFFIX);
+		Files.copy(from.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static boolean hasSameContents(File file1, File file2) throws IOException {
+		if(!file2.isFile() || file1.length() != file2.length()) {
+			return false;
+		}
+		InputStream in1 = new BufferedInputStream(new FileInputStream(file1));
+		try {
+			InputStream in2 = new BufferedInputStream(new FileInputStream(file2));
+			try {
+				int b;
+				while((b = in1.read()) >= 0) {
+					if(b != in2.read()) {
+						return false;
+					}
+				}
+				return in2.read() < 0;
+			}
+			finally {
+				in2.close();
+			}
+		}
+		finally {
+			in1.close();
+		}
+	}
+
+	private static Set<String> readManifest(File snapshot) {
+		File manifest = new File(snapshot, MANIFEST);
+		if(!manifest.isFile()) {
+			return new HashSet<String>();
+		}
+		try {
+			return new HashSet<String>(Files.readAllLines(manifest.toPath(), UTF8));
+		} catch (IOException e) {
+			return new HashSet<String>();
+		}
+	}
+
+	private static void writeManifest(File snapshot, List<String> names) throws IOException {
+		File tmp = new File(snapshot, MANIFEST + TMP_SUFFIX);
+		Files.write(tmp.toPath(), names, UTF8);
+		Files.move(tmp.toPath(), new File(snapshot, MANIFEST).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		for(int i = 0; children != null && i < children.length; i++) {
+			delete(children[i]);
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.cdt.core.ErrorParserManager;
+import org.eclipse.cdt.utils.EFSExtensionManager;
+import org.eclipse.core.filesystem.URIUtil;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Resolves the file locations in cmake messages to workspace files, once per location and run.
+ *
+ * A failing configure reports many messages against a few CMakeLists.txt files, so the 
+ * workspace lookup is done for the first message only. The cache lives as long as the 
+ * {@link ErrorParserManager} of the run and is shared by the CMake error parsers of it.
+ */
+public class ErrorLocationCache {
+
+	private ErrorLocationCache() {
+	}
+
+	/**
+	 * Where a marker goes: a file in the workspace, or else a path outside of it.
+	 */
+	public static class Location {
+		public final IFile file;
+		public final IPath externalPath;
+
+		Location(IFile file, IPath externalPath) {
+			this.file = file;
+			this.externalPath = externalPath;
+		}
+	}
+
+	// the values must not refer to their key, or the caches are never dropped
+	private static final Map<ErrorParserManager, Map<String, Location>> caches = new WeakHashMap<ErrorParserManager, Map<String, Location>>();
+
+	/**
+	 * @param epm the error parser manager of the run
+	 * @param location a path as printed by cmake, absolute or relative to the working directory
+	 */
+	public static Location resolve(ErrorParserManager epm, String location) {
+		Map<String, Location> locations;
+		synchronized (caches) {
+			locations = caches.get(epm);
+			if(locations == null) {
+				locations = new HashMap<String, Location>();
+				caches.put(epm, locations);
+			}
+		}
+		IPath path = new Path(location);
+		URI workingDirectoryURI = epm.getWorkingDirectoryURI();
+		// relative paths depend on the working directory, which may change during a run
+		String key = path.isAbsolute() ? location : workingDirectoryURI + "\n" + location; //$NON-NLS-1$
+		synchronized (locations) {
+			Location result = locations.get(key);
+			if(result != null) {
+				return result;
+			}
+		}
+		path = URIUtil.toPath(toURI(workingDirectoryURI, path));
+		IFile[] foundFiles = ResourcesPlugin.getWorkspace().getRoot().findFilesForLocationURI(URIUtil.toURI(path));
+		IFile resource = foundFiles.length > 0 && foundFiles[0] != null && foundFiles[0].exists() ? foundFiles[0] : null;
+		Location result = new Location(resource, resource == null ? path : null);
+		synchronized (locations) {
+			locations.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Converts a location {@link IPath} to an {@link URI}.
+	 * The returned URI uses the scheme and authority of the working directory.
+	 */
+	private static URI toURI(URI workingDirectoryURI, IPath path) {
+		if (path.isAbsolute()) {
+			return EFSExtensionManager.getDefault().createNewURIFromPath(workingDirectoryURI, path.toString());
+		}
+		return EFSExtensionManager.getDefault().append(workingDirectoryURI, path.toString());
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+
+/**
+ * OSGi service giving read access to the compile_commands.json of CMake projects, 
+ * as parsed and held in memory by this plug-in.
+ *
+ * Files are absolute paths in portable form (see {@link org.eclipse.core.runtime.IPath#toPortableString()}).
+ * All methods return an empty list if there is no compile_commands.json for the configuration.
+ *
+ * @noimplement This interface is not intended to be implemented by clients.
+ */
+public interface ICompileDatabase {
+
+	/**
+	 * @return all source files compiled in the given configuration
+	 */
+	public List<String> getFiles(IProject project, String configName);
+
+	/**
+	 * @return the compiler command line of <code>file</code>, split into arguments. The first one is the compiler.
+	 */
+	public List<String> getFlags(IProject project, String configName, String file);
+
+	/**
+	 * @param directory the build directory of a target, i.e. the "directory" of the compile_commands.json entries
+	 * @return the source files compiled in that directory
+	 */
+	public List<String> getFilesInDirectory(IProject project, String configName, String directory);
+
+	/**
+	 * @param flag a complete command line argument, e.g. "-fPIC" or "-I/usr/include/foo"
+	 * @return the source files whose command line contains <code>flag</code>
+	 */
+	public List<String> getFilesWithFlag(IProject project, String configName, String flag);
+
+	/**
+	 * @param macro a macro name, without "-D" and without value
+	 * @return the source files that are compiled with <code>macro</code> defined on the command line
+	 */
+	public List<String> getFilesWithMacro(IProject project, String configName, String macro);
+
+	public void addChangeListener(ICompileDatabaseListener listener);
+
+	public void removeChangeListener(ICompileDatabaseListener listener);
+}
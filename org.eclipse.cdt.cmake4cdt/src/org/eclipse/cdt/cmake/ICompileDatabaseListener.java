@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import org.eclipse.core.resources.IProject;
+
+/**
+ * Notified by {@link ICompileDatabase} after the compile_commands.json of a configuration was (re-)parsed.
+ * Called in the thread that parsed it, implementations should return quickly.
+ */
+public interface ICompileDatabaseListener {
+	public void compileDatabaseChanged(IProject project, String configName);
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Initial cache scripts (<code>cmake -C</code>) with the results of the compiler checks and 
+ * try_compile() probes of a successful configure.
+ *
+ * A script is kept per key ({@link #getKey(String, List, String[], IPath)}) in the state location 
+ * of the plugin: the toolchain, the cache options and flags passed to cmake, and the source dir, 
+ * as the checks a project runs, and their results, depend on all of them. A new or wiped build dir 
+ * with the same key is seeded with it, so cmake finds the check results in its cache and does not 
+ * run the checks again. Build dirs that already have a cache are not touched.
+ *
+ * Only successful checks are kept, a failed one is run again, e.g. after a missing header was installed.
+ * Seeding is turned off by {@link PreferenceConstants#P_INITIAL_CACHE}, which also deletes the scripts.
+ */
+public class InitialCache {
+
+	private static final String SEED_DIR = "initial-cache"; //$NON-NLS-1$
+	private static final String CMAKE_CACHE = "CMakeCache.txt"; //$NON-NLS-1$
+
+	// arguments that set or remove cache entries, or select generator, toolset or platform
+	private static final String[] CACHE_ARGS = { "-D", "-U", "-G", "-T", "-A" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	// values CMake reads as false, see if(<constant>)
+	private static final String[] FALSE_CONSTANTS = { "0", "OFF", "NO", "FALSE", "N", "IGNORE", "NOTFOUND" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+
+	// comments CMake's check modules and try_compile()/try_run() write to the cache
+	private static final String[] CHECK_COMMENTS = { "Have ", "Test ", "Result of TRY_", "Result of TEST_", "Result of CHECK_" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	private InitialCache() {
+	}
+
+	private static File getSeedDir() {
+		return Activator.getDefault().getStateLocation().append(SEED_DIR).toFile();
+	}
+
+	private static File getSeedFile(String key) {
+		return new File(getSeedDir(), key + ".cmake"); //$NON-NLS-1$
+	}
+
+	private static boolean isEnabled() {
+		return Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_INITIAL_CACHE);
+	}
+
+	/**
+	 * @return the key of the script for a configure with these arguments: the toolchain 
+	 *         ({@link CMakeFingerprint#computeToolchain(String, List, String[])}), the arguments 
+	 *         changing the cache, e.g. <code>-DCMAKE_C_FLAGS=...</code>, and the source dir
+	 */
+	public static String getKey(String cmakeExe, List<String> cmakeArgs, String[] envp, IPath sourceDir) {
+		StringBuilder sb = new StringBuilder(CMakeFingerprint.computeToolchain(cmakeExe, cmakeArgs, envp));
+		for(int i = 0; i < cmakeArgs.size(); i++) {
+			String arg = cmakeArgs.get(i);
+			for(String prefix: CACHE_ARGS) {
+				if(arg.startsWith(prefix)) {
+					sb.append('\n').append(arg);
+					// -G Ninja
+					if(arg.length() == prefix.length() && i + 1 < cmakeArgs.size()) {
+						sb.append(' ').append(cmakeArgs.get(++i));
+					}
+					break;
+				}
+			}
+		}
+		sb.append('\n').append(sourceDir.toPortableString());
+		return CMakeFingerprint.hash(sb.toString());
+	}
+
+	/**
+	 * @return <code>-C &lt;script&gt;</code> if seeding is on, <code>buildDir</code> has no cache yet 
+	 *         and a script for the key exists, an empty list otherwise
+	 */
+	public static List<String> getArguments(String key, IPath buildDir) {
+		File seed = getSeedFile(key);
+		if(!isEnabled() || buildDir.append(CMAKE_CACHE).toFile().exists() || !seed.isFile()) {
+			return Collections.emptyList();
+		}
+		List<String> args = new ArrayList<String>();
+		args.add("-C"); //$NON-NLS-1$
+		args.add(seed.getAbsolutePath());
+		return args;
+	}
+
+	/**
+	 * Writes the successful check results of the cache in <code>buildDir</code> to the script of 
+	 * the key. To be called after a successful configure.
+	 */
+	public static void capture(String key, IPath buildDir) {
+		File cache = buildDir.append(CMAKE_CACHE).toFile();
+		if(!isEnabled() || !cache.isFile()) {
+			return;
+		}
+		List<String> entries = new ArrayList<String>();
+		BufferedReader reader = null;
+		try {
+			// //Have include stdint.h
+			// HAVE_STDINT_H:INTERNAL=1
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(cache), "UTF-8")); //$NON-NLS-1$
+			String comment = ""; //$NON-NLS-1$
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith("//")) { //$NON-NLS-1$
+					comment = line.substring(2);
+					continue;
+				}
+				int colon = line.indexOf(':');
+				int equals = line.indexOf('=', colon + 1);
+				if(colon > 0 && equals > colon && line.substring(colon + 1, equals).equals("INTERNAL") && isCheckResult(line.substring(0, colon), comment) //$NON-NLS-1$
+						&& !isFailed(line.substring(equals + 1), comment)) {
+					entries.add("set(" + line.substring(0, colon) + " \"" + quote(line.substring(equals + 1)) + "\" CACHE INTERNAL \"" + quote(comment) + "\")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				}
+				comment = ""; //$NON-NLS-1$
+			}
+		} catch (IOException e) {
+			Activator.log(e);
+			return;
+		} finally {
+			if(reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		if(entries.isEmpty()) {
+			return;
+		}
+
+		// written to a temporary file first, a concurrent configure must not read half a script
+		File seed = getSeedFile(key);
+		seed.getParentFile().mkdirs();
+		File tmp = new File(seed.getPath() + '.' + Thread.currentThread().getId() + ".tmp"); //$NON-NLS-1$
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8")); //$NON-NLS-1$
+			writer.println("# Check results of a successful configure, written by the CDT CMake plugin"); //$NON-NLS-1$
+			for(String entry: entries) {
+				writer.println(entry);
+			}
+		} catch (IOException e) {
+			Activator.log(e);
+			tmp.delete();
+			return;
+		} finally {
+			if(writer != null) {
+				writer.close();
+			}
+		}
+		seed.delete();
+		if(!tmp.renameTo(seed)) {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Deletes all scripts, the next configure of each build dir runs all checks again.
+	 */
+	public static void clear() {
+		File[] seeds = getSeedDir().listFiles();
+		if(seeds != null) {
+			for(File seed: seeds) {
+				seed.delete();
+			}
+		}
+	}
+
+	// a failed check, e.g. HAVE_FOO_H:INTERNAL= 
+	private static boolean isFailed(String value, String comment) {
+		String v = value.trim().toUpperCase();
+		if(v.isEmpty() || v.endsWith("-NOTFOUND")) { //$NON-NLS-1$
+			return true;
+		}
+		if(comment.startsWith("Result of TRY_RUN")) { //$NON-NLS-1$
+			// the exit code of the program, 0 is success
+			return v.equals("FAILED_TO_RUN"); //$NON-NLS-1$
+		}
+		for(String constant: FALSE_CONSTANTS) {
+			if(v.equals(constant)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isCheckResult(String name, String comment) {
+		if(name.startsWith("HAVE_") || name.startsWith("CMAKE_HAVE_")) { //$NON-NLS-1$ //$NON-NLS-2$
+			return true;
+		}
+		for(String prefix: CHECK_COMMENTS) {
+			if(comment.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String quote(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("$", "\\$"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+	}
+}
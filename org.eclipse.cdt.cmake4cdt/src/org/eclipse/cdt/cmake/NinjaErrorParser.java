@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import org.eclipse.cdt.core.ErrorParserManager;
+import org.eclipse.cdt.core.IErrorParser;
+import org.eclipse.cdt.core.IMarkerGenerator;
+
+/**
+ * Error Parser for the output of ninja, the counterpart of the GNU make error parser 
+ * for projects using the Ninja generator.
+ *
+ * Compiler messages are handled by the compiler error parsers, this one handles 
+ *   FAILED: CMakeFiles/app.dir/main.c.o
+ *   ninja: error: loading 'build.ninja': No such file or directory
+ *   ninja: warning: multiple rules generate foo
+ */
+public class NinjaErrorParser implements IErrorParser {
+
+	public static final String ID = "org.eclipse.cdt.cmake.errorParserNinja"; //$NON-NLS-1$
+
+	private static final String FAILED = "FAILED: "; //$NON-NLS-1$
+	private static final String NINJA_ERROR = "ninja: error: "; //$NON-NLS-1$
+	private static final String NINJA_WARNING = "ninja: warning: "; //$NON-NLS-1$
+
+	@Override
+	public boolean processLine(String line, ErrorParserManager eoParser) {
+		// cheap prefix tests, called for every line of the build output
+		if(line.startsWith(FAILED)) {
+			eoParser.generateMarker(null, -1, "Failed to build " + line.substring(FAILED.length()), IMarkerGenerator.SEVERITY_ERROR_BUILD, null); //$NON-NLS-1$
+			return true;
+		}
+		if(line.startsWith(NINJA_ERROR)) {
+			eoParser.generateMarker(null, -1, line.substring(NINJA_ERROR.length()), IMarkerGenerator.SEVERITY_ERROR_BUILD, null);
+			return true;
+		}
+		if(line.startsWith(NINJA_WARNING)) {
+			eoParser.generateMarker(null, -1, line.substring(NINJA_WARNING.length()), IMarkerGenerator.SEVERITY_WARNING, null);
+			return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decouples the threads reading stdout and stderr of a process from the streams the 
+ * output is written to, i.e. the error parsers of an ErrorParserManager and the console.
+ *
+ * The readers only copy their chunks into a bounded queue, so the process is not slowed 
+ * down by parsing. A single consumer thread writes the chunks in the order they arrived, 
+ * in batches, and flushes once per batch. The readers only block if the queue is full.
+ * If a target throws anything but an IOException, e.g. an error parser failing, the queue 
+ * is marked failed and the consumer drops all further output, so the readers never block.
+ */
+public class ParsingQueue {
+
+	private static final int CAPACITY = 1024;
+	private static final int MAX_BATCH = 256;
+
+	private static final int STDOUT = 0;
+	private static final int STDERR = 1;
+
+	/**
+	 * A piece of output of one stream. <code>null</code> data closes the stream, 
+	 * a negative stream ends the consumer.
+	 */
+	private static class Chunk {
+		final int stream;
+		final byte[] data;
+
+		Chunk(int stream, byte[] data) {
+			this.stream = stream;
+			this.data = data;
+		}
+	}
+
+	private static final Chunk END = new Chunk(-1, null);
+
+	private final OutputStream[] targets;
+	private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(CAPACITY);
+	private final Thread consumer;
+	private volatile boolean closed = false;
+	// set by the consumer if writing has failed, output is dropped from then on
+	private volatile boolean failed = false;
+	// first error of a target, further output for it is dropped
+	private final IOException[] errors = new IOException[2];
+	// targets written since their last flush, only used by the consumer
+	private final boolean[] dirty = new boolean[2];
+	// chunks taken from the queue and not yet written, only used by the consumer
+	private final List<Chunk> batch = new ArrayList<Chunk>(MAX_BATCH);
+
+	/**
+	 * @param out receives stdout, may be <code>null</code>
+	 * @param err receives stderr, may be <code>null</code>
+	 */
+	public ParsingQueue(OutputStream out, OutputStream err) {
+		this.targets = new OutputStream[] { out, err };
+		consumer = new Thread("CMake output parser") { //$NON-NLS-1$
+			@Override
+			public void run() {
+				consume();
+			}
+		};
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * @return the stream for stdout of the process, <code>null</code> if no target was given
+	 */
+	public OutputStream getOutputStream() {
+		return targets[STDOUT] == null ? null : new QueueStream(STDOUT);
+	}
+
+	/**
+	 * @return the stream for stderr of the process, <code>null</code> if no target was given
+	 */
+	public OutputStream getErrorStream() {
+		return targets[STDERR] == null ? null : new QueueStream(STDERR);
+	}
+
+	/**
+	 * Waits until all queued output is written and stops the consumer.
+	 * Output written afterwards is dropped.
+	 */
+	public void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		boolean interrupted = false;
+		boolean queued = false;
+		while(true) {
+			try {
+				// a consumer that has died can no longer make room for END
+				while(!queued && consumer.isAlive()) {
+					queued = queue.offer(END, 100, TimeUnit.MILLISECONDS);
+				}
+				consumer.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void put(Chunk chunk) throws IOException {
+		if(failed) {
+			return;
+		}
+		try {
+			// a reader still running after close(), e.g. of a terminated process, must not block forever
+			while(!closed && !failed && !queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+				// the consumer is behind
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while queuing process output"); //$NON-NLS-1$
+		}
+	}
+
+	private void consume() {
+		try {
+			write();
+		} catch (Throwable t) {
+			failed = true;
+			Activator.log(t);
+			if(!batch.contains(END)) {
+				discard();
+			}
+		}
+	}
+
+	/**
+	 * Drops all output until the end of the queue.
+	 */
+	private void discard() {
+		while(true) {
+			try {
+				if(queue.take() == END) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void write() {
+		// consecutive chunks of the same stream are written at once
+		ByteArrayOutputStream pending = new ByteArrayOutputStream();
+		int pendingStream = STDOUT;
+		while(true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			queue.drainTo(batch, MAX_BATCH - 1);
+			for(Chunk chunk: batch) {
+				if(chunk.data != null && chunk.stream == pendingStream) {
+					pending.write(chunk.data, 0, chunk.data.length);
+					continue;
+				}
+				write(pendingStream, pending);
+				if(chunk == END) {
+					flush();
+					return;
+				}
+				if(chunk.data == null) {
+					// closing flushes
+					dirty[chunk.stream] = false;
+					close(chunk.stream);
+				}
+				else {
+					pendingStream = chunk.stream;
+					pending.write(chunk.data, 0, chunk.data.length);
+				}
+			}
+			batch.clear();
+			write(pendingStream, pending);
+			flush();
+		}
+	}
+
+	/**
+	 * Writes and empties <code>pending</code>.
+	 */
+	private void write(int stream, ByteArrayOutputStream pending) {
+		if(pending.size() == 0) {
+			return;
+		}
+		if(errors[stream] == null) {
+			try {
+				pending.writeTo(targets[stream]);
+				dirty[stream] = true;
+			} catch (IOException e) {
+				errors[stream] = e;
+				Activator.log(e);
+			}
+		}
+		pending.reset();
+	}
+
+	private void close(int stream) {
+		if(errors[stream] != null) {
+			return;
+		}
+		try {
+			targets[stream].close();
+		} catch (IOException e) {
+			errors[stream] = e;
+			Activator.log(e);
+		}
+	}
+
+	private void flush() {
+		for(int stream = 0; stream < dirty.length; stream++) {
+			if(dirty[stream]) {
+				dirty[stream] = false;
+				if(errors[stream] == null) {
+					try {
+						targets[stream].flush();
+					} catch (IOException e) {
+						errors[stream] = e;
+						Activator.log(e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The end of the queue a reader thread writes to.
+	 */
+	private class QueueStream extends OutputStream {
+
+		private final int stream;
+
+		QueueStream(int stream) {
+			this.stream = stream;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.OutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) throws IOException {
+			put(new Chunk(stream, new byte[] { (byte)b }));
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if(len > 0) {
+				byte[] data = new byte[len];
+				System.arraycopy(b, off, data, 0, len);
+				put(new Chunk(stream, data));
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.OutputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			put(new Chunk(stream, null));
+		}
+	}
+}
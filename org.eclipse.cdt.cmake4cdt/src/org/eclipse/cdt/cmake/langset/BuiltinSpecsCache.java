@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * Workspace wide cache of the builtin include paths and macros of compilers.
+ *
+ * The key identifies a compiler binary by its path, modification time and size, together with 
+ * the flags passed to it (which contain the sysroot). Many projects share the same cross toolchains,
+ * with this cache each distinct compiler is run only once per language, across projects,
+ * configurations and sessions. It is kept in the plug-in state location.
+ */
+public class BuiltinSpecsCache {
+
+	private static BuiltinSpecsCache instance = null;
+
+	private final LangSetEntryStore store;
+
+	private BuiltinSpecsCache(File file) {
+		store = new LangSetEntryStore(file);
+		store.load();
+	}
+
+	public static synchronized BuiltinSpecsCache getDefault() {
+		if(instance == null) {
+			instance = new BuiltinSpecsCache(Activator.getDefault().getStateLocation().append("builtin-specs.bin").toFile()); //$NON-NLS-1$
+		}
+		return instance;
+	}
+
+	/**
+	 * @param compilerCommand the compiler, absolute or to be found via PATH
+	 * @param flags the options the compiler is run with to detect the builtins
+	 * @param envp the environment the compiler is run in as <code>name=value</code>, 
+	 *        <code>null</code> for the one of Eclipse. Its PATH is searched for the compiler
+	 * @return the key identifying that compiler, <code>null</code> if the compiler binary could not be found
+	 */
+	public static String getKey(String compilerCommand, String flags, String[] envp) {
+		if(compilerCommand == null || compilerCommand.isEmpty()) {
+			return null;
+		}
+		File compiler = findExecutable(compilerCommand, envp);
+		if(compiler == null) {
+			return null;
+		}
+		String compilerPath;
+		try {
+			compilerPath = compiler.getCanonicalPath();
+		} catch (IOException e) {
+			compilerPath = compiler.getAbsolutePath();
+		}
+		return compilerPath + '|' + compiler.lastModified() + '|' + compiler.length() + '|' + (flags == null ? "" : flags.trim()); //$NON-NLS-1$
+	}
+
+	/**
+	 * @param envp the environment as <code>name=value</code>, <code>null</code> for the one of Eclipse
+	 * @return the executable run for command in envp, <code>null</code> if it could not be found
+	 */
+	public static File findExecutable(String command, String[] envp) {
+		File file = new File(command);
+		if(file.isAbsolute()) {
+			return file.isFile() ? file : null;
+		}
+		String path = getPath(envp);
+		if(path == null) {
+			return null;
+		}
+		boolean isWindows = Platform.OS_WIN32.equals(Platform.getOS());
+		for(String dir: path.split(File.pathSeparator)) {
+			File candidate = new File(dir, command);
+			if(candidate.isFile()) {
+				return candidate;
+			}
+			if(isWindows) {
+				candidate = new File(dir, command + ".exe"); //$NON-NLS-1$
+				if(candidate.isFile()) {
+					return candidate;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static String getPath(String[] envp) {
+		if(envp == null) {
+			return System.getenv("PATH"); //$NON-NLS-1$
+		}
+		boolean isWindows = Platform.OS_WIN32.equals(Platform.getOS());
+		for(String var: envp) {
+			int eq = var.indexOf('=');
+			// Windows spells it Path
+			if(eq > 0 && (isWindows ? var.substring(0, eq).equalsIgnoreCase("PATH") : var.substring(0, eq).equals("PATH"))) { //$NON-NLS-1$ //$NON-NLS-2$
+				return var.substring(eq + 1);
+			}
+		}
+		return null;
+	}
+
+	public List<ICLanguageSettingEntry> get(String key, String languageId) {
+		return store.get(key, languageId);
+	}
+
+	public void put(String key, String languageId, List<? extends ICLanguageSettingEntry> entries) {
+		// written right away, detection results are rare and expensive to get
+		store.put(key, languageId, entries);
+		store.close();
+	}
+}
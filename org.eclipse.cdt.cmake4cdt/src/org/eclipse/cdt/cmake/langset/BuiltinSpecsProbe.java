@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Runs the command of a builtin specs detector, e.g. <code>gcc -E -P -v -dD spec.c</code>, 
+ * in the environment of the build configuration and collects the builtin include paths and macros
+ * of the compiler.
+ *
+ * Unlike the CDT builtin specs detectors, a probe holds no state besides its result, 
+ * so any number of them can run at the same time. Results are taken from and put into 
+ * the {@link BuiltinSpecsCache}.
+ *
+ * Probes are run by {@link #submit(BuiltinSpecsProbe)} on an executor shared by all detectors
+ * with one thread per processor, so a fresh workspace with many projects starts all probes at once
+ * without starting dozens of compilers.
+ */
+public class BuiltinSpecsProbe implements Callable<BuiltinSpecsProbe.Result> {
+
+	private static final String INCLUDE_QUOTE_START = "#include \"...\" search starts here:"; //$NON-NLS-1$
+	private static final String INCLUDE_START = "#include <...> search starts here:"; //$NON-NLS-1$
+	private static final String INCLUDE_END = "End of search list."; //$NON-NLS-1$
+	private static final String FRAMEWORK_SUFFIX = "(framework directory)"; //$NON-NLS-1$
+	private static final String DEFINE = "#define "; //$NON-NLS-1$
+
+	private static final int PROBE_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static ThreadPoolExecutor executor = null;
+	// probes started and not yet finished, by getId()
+	private static Map<String, Future<Result>> running = new HashMap<String, Future<Result>>();
+
+	private final String[] command;
+	private final String[] envp;
+	private final String languageId;
+	// identifies the compiler binary and the command line, null if the compiler was not found
+	private final String key;
+
+	/**
+	 * Entries found by a probe, and the output of the compiler they were parsed from.
+	 */
+	public static class Result {
+		private final List<ICLanguageSettingEntry> entries;
+		private final String output;
+
+		Result(List<ICLanguageSettingEntry> entries, String output) {
+			this.entries = entries;
+			this.output = output;
+		}
+
+		public List<ICLanguageSettingEntry> getEntries() {
+			return entries;
+		}
+
+		/**
+		 * @return the command line and the output of the compiler, <code>null</code> if the entries were cached
+		 */
+		public String getOutput() {
+			return output;
+		}
+	}
+
+	/**
+	 * @param compilerCommand the compiler the command runs
+	 * @param command the resolved command line of the detector, the compiler first
+	 * @param envp the environment of the build configuration as <code>name=value</code>
+	 */
+	public BuiltinSpecsProbe(String compilerCommand, String[] command, String[] envp, String languageId) {
+		this.command = command;
+		this.envp = envp;
+		this.languageId = languageId;
+		StringBuilder args = new StringBuilder();
+		for(int i = 1; i < command.length; i++) {
+			args.append(command[i]).append(' ');
+		}
+		this.key = BuiltinSpecsCache.getKey(compilerCommand, args.toString(), envp);
+	}
+
+	/**
+	 * @return the identity of this probe: compiler, command line and language
+	 */
+	public String getId() {
+		StringBuilder id = new StringBuilder();
+		if(key != null) {
+			id.append(key);
+		}
+		else {
+			for(String arg: command) {
+				id.append(arg).append(' ');
+			}
+		}
+		return id.append('\n').append(languageId).toString();
+	}
+
+	/**
+	 * @return the language id part of a probe id
+	 */
+	public static String getLanguageId(String id) {
+		return id.substring(id.lastIndexOf('\n') + 1);
+	}
+
+	/**
+	 * Starts a probe on the shared executor. If the same probe is already running, 
+	 * e.g. for another project with the same toolchain, its result is shared.
+	 */
+	public static synchronized Future<Result> submit(BuiltinSpecsProbe probe) {
+		final String id = probe.getId();
+		Future<Result> result = running.get(id);
+		if(result == null) {
+			FutureTask<Result> task = new FutureTask<Result>(probe) {
+				@Override
+				protected void done() {
+					synchronized (BuiltinSpecsProbe.class) {
+						running.remove(id);
+					}
+				}
+			};
+			running.put(id, task);
+			getExecutor().execute(task);
+			result = task;
+		}
+		return result;
+	}
+
+	private static ThreadPoolExecutor getExecutor() {
+		if(executor == null) {
+			executor = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "CMake builtin specs probe"); //$NON-NLS-1$
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			// no idle threads once detection is done
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Callable#call()
+	 */
+	@Override
+	public Result call() throws IOException, InterruptedException {
+		if(key != null) {
+			List<ICLanguageSettingEntry> entries = BuiltinSpecsCache.getDefault().get(key, languageId);
+			if(entries != null) {
+				return new Result(entries, null);
+			}
+		}
+
+		List<String> cmd = new ArrayList<String>(Arrays.asList(command));
+		// ProcessBuilder searches the PATH of Eclipse, the compiler may only be on the one of the configuration
+		File compiler = BuiltinSpecsCache.findExecutable(cmd.get(0), envp);
+		if(compiler != null) {
+			cmd.set(0, compiler.getPath());
+		}
+
+		ProcessBuilder pb = new ProcessBuilder(cmd);
+		pb.redirectErrorStream(true);
+		if(envp != null) {
+			Map<String, String> env = pb.environment();
+			env.clear();
+			for(String var: envp) {
+				int eq = var.indexOf('=');
+				if(eq > 0) {
+					env.put(var.substring(0, eq), var.substring(eq + 1));
+				}
+			}
+		}
+		StringBuilder output = new StringBuilder();
+		for(String arg: cmd) {
+			output.append(arg).append(' ');
+		}
+		output.append('\n');
+		Process proc = pb.start();
+		List<ICLanguageSettingEntry> entries;
+		try {
+			// empty input
+			proc.getOutputStream().close();
+			entries = parse(new BufferedReader(new InputStreamReader(proc.getInputStream())), output);
+			if(proc.waitFor() != 0) {
+				throw new IOException("Builtin specs detection failed: " + output); //$NON-NLS-1$
+			}
+		}
+		finally {
+			proc.destroy();
+		}
+
+		if(key != null && !entries.isEmpty()) {
+			BuiltinSpecsCache.getDefault().put(key, languageId, entries);
+		}
+		return new Result(entries, output.toString());
+	}
+
+	/**
+	 * @param output receives the lines read
+	 */
+	private static List<ICLanguageSettingEntry> parse(BufferedReader reader, StringBuilder output) throws IOException {
+		List<ICLanguageSettingEntry> includes = new ArrayList<ICLanguageSettingEntry>();
+		List<ICLanguageSettingEntry> macros = new ArrayList<ICLanguageSettingEntry>();
+		int builtin = ICSettingEntry.BUILTIN | ICSettingEntry.READONLY;
+		int includeFlags = -1; // outside of the search list
+		String line;
+		while((line = reader.readLine()) != null) {
+			output.append(line).append('\n');
+			if(line.startsWith(INCLUDE_QUOTE_START)) {
+				includeFlags = builtin | ICSettingEntry.LOCAL;
+			}
+			else if(line.startsWith(INCLUDE_START)) {
+				includeFlags = builtin;
+			}
+			else if(line.startsWith(INCLUDE_END)) {
+				includeFlags = -1;
+			}
+			else if(includeFlags != -1 && line.startsWith(" ")) { //$NON-NLS-1$
+				String dir = line.trim();
+				if(dir.endsWith(FRAMEWORK_SUFFIX)) {
+					continue;
+				}
+				includes.add(CDataUtil.createCIncludePathEntry(new Path(dir).toString(), includeFlags));
+			}
+			else if(line.startsWith(DEFINE)) {
+				String def = line.substring(DEFINE.length());
+				// the name ends at the first blank outside of a parameter list
+				int blank = def.indexOf(' ');
+				int paren = def.indexOf('(');
+				if(paren >= 0 && paren < blank) {
+					blank = def.indexOf(' ', def.indexOf(')'));
+				}
+				String name = blank < 0 ? def : def.substring(0, blank);
+				String value = blank < 0 ? "" : def.substring(blank + 1); //$NON-NLS-1$
+				macros.add(CDataUtil.createCMacroEntry(name, value, builtin));
+			}
+		}
+		includes.addAll(macros);
+		return includes;
+	}
+}
@@ -11,7 +11,12 @@
 
 package org.eclipse.cdt.cmake.langset;
 
+import java.util.List;
+
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.cdt.managedbuilder.language.settings.providers.GCCBuildCommandParser;
+import org.eclipse.core.resources.IResource;
 
 /**
  * @author runge_m
@@ -19,9 +24,23 @@ import org.eclipse.cdt.managedbuilder.language.settings.providers.GCCBuildComman
  */
 public class CMakeCompileCommandParserGCC extends GCCBuildCommandParser implements IBuildCommandParserEx {
 
+	private LangSetEntryStore entryStore = null;
+
 	public CompileUnitInfo getCompileUnitInfo() {
 		return new CompileUnitInfo(parsedResourceName, currentResource);
 	}
+
+	public void setEntryStore(LangSetEntryStore store) {
+		this.entryStore = store;
+	}
+
+	@Override
+	public void setSettingEntries(ICConfigurationDescription cfgDescription, IResource rc, String languageId, List<? extends ICLanguageSettingEntry> entries) {
+		super.setSettingEntries(cfgDescription, rc, languageId, entries);
+		if(entryStore != null) {
+			entryStore.put(LangSetEntryStore.getResourceKey(rc), languageId, entries);
+		}
+	}
 	
 	public void shutdown() {
 		cleanup();
@@ -0,0 +1,416 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Access to the CMake file-based API (CMake 3.14 and later), codemodel version 2.
+ *
+ * {@link #writeQuery(IPath)} asks cmake to write the code model during the next configure, 
+ * {@link #read(IPath, String)} reads it back. Compared to compile_commands.json, include paths 
+ * and macros come already split up and shared per compile group, so no command line has to be parsed.
+ * Only the flags of a compile group (compileCommandFragments, e.g. CMAKE_CXX_FLAGS) are given as 
+ * text, the few options among them that make language settings are picked out.
+ */
+public class CMakeFileApi {
+
+	private static final String API_DIR = ".cmake/api/v1"; //$NON-NLS-1$
+	private static final String CLIENT = "client-org.eclipse.cdt.cmake"; //$NON-NLS-1$
+	private static final String CODEMODEL_QUERY = "codemodel-v2"; //$NON-NLS-1$
+
+	/**
+	 * One build target of the code model.
+	 */
+	public static class Target {
+		private final String name;
+		private final String type;
+		private final List<String> artifacts;
+		private final List<Source> sources;
+
+		Target(String name, String type, List<String> artifacts, List<Source> sources) {
+			this.name = name;
+			this.type = type;
+			this.artifacts = artifacts;
+			this.sources = sources;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return e.g. EXECUTABLE, STATIC_LIBRARY, SHARED_LIBRARY, UTILITY
+		 */
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return the absolute paths of the files this target builds
+		 */
+		public List<String> getArtifacts() {
+			return artifacts;
+		}
+
+		/**
+		 * @return the compiled sources of this target
+		 */
+		public List<Source> getSources() {
+			return sources;
+		}
+	}
+
+	/**
+	 * A compiled source file with the language settings of its compile group. 
+	 * All sources of a compile group share the same entry list.
+	 */
+	public static class Source {
+		private final IPath path;
+		private final String languageId;
+		private final List<ICLanguageSettingEntry> entries;
+
+		Source(IPath path, String languageId, List<ICLanguageSettingEntry> entries) {
+			this.path = path;
+			this.languageId = languageId;
+			this.entries = entries;
+		}
+
+		/**
+		 * @return the absolute path of the source file
+		 */
+		public IPath getPath() {
+			return path;
+		}
+
+		public String getLanguageId() {
+			return languageId;
+		}
+
+		public List<ICLanguageSettingEntry> getEntries() {
+			return entries;
+		}
+	}
+
+	/**
+	 * Requests the code model from the next cmake run in buildDir.
+	 */
+	public static void writeQuery(IPath buildDir) {
+		File query = buildDir.append(API_DIR).append("query").append(CLIENT).append(CODEMODEL_QUERY).toFile(); //$NON-NLS-1$
+		if(query.exists()) {
+			return;
+		}
+		query.getParentFile().mkdirs();
+		try {
+			query.createNewFile();
+		} catch (IOException e) {
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * @param buildDir the build dir cmake has run in, or the dir of a {@link org.eclipse.cdt.cmake.ConfigureSnapshot}
+	 * @param configName the build configuration, used with multi-configuration generators
+	 * @return the targets of the configuration, <code>null</code> if cmake has not written a code model
+	 */
+	public static List<Target> read(IPath buildDir, String configName) {
+		File replyDir = buildDir.append(API_DIR).append("reply").toFile(); //$NON-NLS-1$
+		// index files are named by time of creation, the latest is the valid one
+		File index = null;
+		File[] files = replyDir.listFiles();
+		if(files == null) {
+			return null;
+		}
+		for(File file: files) {
+			String name = file.getName();
+			if(name.startsWith("index-") && name.endsWith(".json") && (index == null || name.compareTo(index.getName()) > 0)) { //$NON-NLS-1$ //$NON-NLS-2$
+				index = file;
+			}
+		}
+		if(index == null) {
+			return null;
+		}
+
+		try {
+			JSONObject reply = readJson(index).getJSONObject("reply").optJSONObject(CLIENT); //$NON-NLS-1$
+			JSONObject codemodelRef = reply == null ? null : reply.optJSONObject(CODEMODEL_QUERY);
+			if(codemodelRef == null || !codemodelRef.has("jsonFile")) { //$NON-NLS-1$
+				return null;
+			}
+			JSONObject codemodel = readJson(new File(replyDir, codemodelRef.getString("jsonFile"))); //$NON-NLS-1$
+			IPath sourceDir = new Path(codemodel.getJSONObject("paths").getString("source")); //$NON-NLS-1$ //$NON-NLS-2$
+			// buildDir may hold a copy of the replies only, relative artifact paths refer to the dir cmake has run in
+			IPath cmakeBuildDir = new Path(codemodel.getJSONObject("paths").optString("build", buildDir.toString())); //$NON-NLS-1$ //$NON-NLS-2$
+
+			JSONArray configs = codemodel.getJSONArray("configurations"); //$NON-NLS-1$
+			JSONObject config = configs.length() > 0 ? configs.getJSONObject(0) : null;
+			for(int i = 0; i < configs.length(); i++) {
+				if(configs.getJSONObject(i).optString("name").equalsIgnoreCase(configName)) { //$NON-NLS-1$
+					config = configs.getJSONObject(i);
+				}
+			}
+			if(config == null) {
+				return null;
+			}
+
+			List<Target> targets = new ArrayList<Target>();
+			JSONArray targetRefs = config.getJSONArray("targets"); //$NON-NLS-1$
+			for(int i = 0; i < targetRefs.length(); i++) {
+				targets.add(readTarget(readJson(new File(replyDir, targetRefs.getJSONObject(i).getString("jsonFile"))), sourceDir, cmakeBuildDir)); //$NON-NLS-1$
+			}
+			return targets;
+		} catch (IOException e) {
+			Activator.log(e);
+		} catch (JSONException e) {
+			Activator.log(e);
+		}
+		return null;
+	}
+
+	private static Target readTarget(JSONObject json, IPath sourceDir, IPath buildDir) throws JSONException {
+		// the dir the sources of the target are compiled in, relative paths in the flags refer to it
+		JSONObject paths = json.optJSONObject("paths"); //$NON-NLS-1$
+		IPath compileDir = paths == null ? buildDir : makeAbsolute(paths.optString("build", "."), buildDir); //$NON-NLS-1$ //$NON-NLS-2$
+
+		List<String> artifacts = new ArrayList<String>();
+		JSONArray artifactsJson = json.optJSONArray("artifacts"); //$NON-NLS-1$
+		for(int i = 0; artifactsJson != null && i < artifactsJson.length(); i++) {
+			artifacts.add(makeAbsolute(artifactsJson.getJSONObject(i).getString("path"), buildDir).toString()); //$NON-NLS-1$
+		}
+
+		// entries and language of each compile group, shared by all of its sources
+		JSONArray groupsJson = json.optJSONArray("compileGroups"); //$NON-NLS-1$
+		int nGroups = groupsJson == null ? 0 : groupsJson.length();
+		List<List<ICLanguageSettingEntry>> groupEntries = new ArrayList<List<ICLanguageSettingEntry>>(nGroups);
+		List<String> groupLanguages = new ArrayList<String>(nGroups);
+		for(int i = 0; i < nGroups; i++) {
+			JSONObject group = groupsJson.getJSONObject(i);
+			groupLanguages.add(getLanguageId(group.optString("language"))); //$NON-NLS-1$
+			GroupEntries entries = new GroupEntries();
+			// -I dirs are searched before -isystem dirs
+			JSONArray includes = group.optJSONArray("includes"); //$NON-NLS-1$
+			List<String> systemIncludes = new ArrayList<String>();
+			for(int j = 0; includes != null && j < includes.length(); j++) {
+				JSONObject include = includes.getJSONObject(j);
+				String dir = makeAbsolute(include.getString("path"), sourceDir).toString(); //$NON-NLS-1$
+				if(include.optBoolean("isSystem")) { //$NON-NLS-1$
+					systemIncludes.add(dir);
+				}
+				else {
+					entries.includes.add(CDataUtil.createCIncludePathEntry(dir, 0));
+				}
+			}
+			for(String dir: systemIncludes) {
+				entries.systemIncludes.add(CDataUtil.createCIncludePathEntry(dir, 0));
+			}
+			JSONArray defines = group.optJSONArray("defines"); //$NON-NLS-1$
+			for(int j = 0; defines != null && j < defines.length(); j++) {
+				entries.addMacro(defines.getJSONObject(j).getString("define")); //$NON-NLS-1$
+			}
+			JSONArray fragments = group.optJSONArray("compileCommandFragments"); //$NON-NLS-1$
+			for(int j = 0; fragments != null && j < fragments.length(); j++) {
+				entries.addFlags(fragments.getJSONObject(j).getString("fragment"), compileDir); //$NON-NLS-1$
+			}
+			groupEntries.add(entries.toList());
+		}
+
+		List<Source> sources = new ArrayList<Source>();
+		JSONArray sourcesJson = json.optJSONArray("sources"); //$NON-NLS-1$
+		for(int i = 0; sourcesJson != null && i < sourcesJson.length(); i++) {
+			JSONObject source = sourcesJson.getJSONObject(i);
+			if(!source.has("compileGroupIndex")) { //$NON-NLS-1$
+				// headers and other files that are not compiled
+				continue;
+			}
+			int group = source.getInt("compileGroupIndex"); //$NON-NLS-1$
+			IPath path = makeAbsolute(source.getString("path"), sourceDir); //$NON-NLS-1$
+			sources.add(new Source(path, groupLanguages.get(group), groupEntries.get(group)));
+		}
+
+		return new Target(json.getString("name"), json.optString("type"), artifacts, sources); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * The entries of a compile group, collected in the order the compiler searches them.
+	 */
+	private static class GroupEntries {
+		final List<ICLanguageSettingEntry> quoteIncludes = new ArrayList<ICLanguageSettingEntry>();
+		final List<ICLanguageSettingEntry> includes = new ArrayList<ICLanguageSettingEntry>();
+		final List<ICLanguageSettingEntry> systemIncludes = new ArrayList<ICLanguageSettingEntry>();
+		final List<ICLanguageSettingEntry> files = new ArrayList<ICLanguageSettingEntry>();
+		final List<ICLanguageSettingEntry> macros = new ArrayList<ICLanguageSettingEntry>();
+
+		void addMacro(String define) {
+			int eq = define.indexOf('=');
+			String name = eq < 0 ? define : define.substring(0, eq);
+			String value = eq < 0 ? "" : define.substring(eq + 1); //$NON-NLS-1$
+			macros.add(CDataUtil.createCMacroEntry(name, value, 0));
+		}
+
+		/**
+		 * Picks the options that make language settings out of the flags of a compile group:
+		 * -I, -isystem, -iquote, -D, -include, -imacros and -std.
+		 */
+		void addFlags(String fragment, IPath compileDir) {
+			String[] args = fragment.trim().split("\\s+"); //$NON-NLS-1$
+			for(int i = 0; i < args.length; i++) {
+				String arg = unquote(args[i]);
+				String[] options = { "-isystem", "-iquote", "-include", "-imacros", "-I", "-D" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+				String option = null;
+				for(String o: options) {
+					if(arg.startsWith(o)) {
+						option = o;
+						break;
+					}
+				}
+				if(option == null) {
+					if(arg.startsWith("-std=")) { //$NON-NLS-1$
+						addStandardMacros(arg.substring(5));
+					}
+					continue;
+				}
+				// -I dir or -Idir
+				String value = arg.substring(option.length());
+				if(value.isEmpty() && i + 1 < args.length) {
+					value = unquote(args[++i]);
+				}
+				if(value.isEmpty()) {
+					continue;
+				}
+				if(option.equals("-D")) { //$NON-NLS-1$
+					addMacro(value);
+					continue;
+				}
+				String path = makeAbsolute(value, compileDir).toString();
+				if(option.equals("-I")) { //$NON-NLS-1$
+					includes.add(CDataUtil.createCIncludePathEntry(path, 0));
+				}
+				else if(option.equals("-isystem")) { //$NON-NLS-1$
+					systemIncludes.add(CDataUtil.createCIncludePathEntry(path, 0));
+				}
+				else if(option.equals("-iquote")) { //$NON-NLS-1$
+					quoteIncludes.add(CDataUtil.createCIncludePathEntry(path, ICSettingEntry.LOCAL));
+				}
+				else if(option.equals("-include")) { //$NON-NLS-1$
+					files.add(CDataUtil.createCIncludeFileEntry(path, 0));
+				}
+				else {
+					files.add(CDataUtil.createCMacroFileEntry(path, 0));
+				}
+			}
+		}
+
+		/**
+		 * The builtin specs are probed without -std, the macros telling the standard are set here.
+		 */
+		private void addStandardMacros(String std) {
+			String version = null;
+			String macro = "__cplusplus"; //$NON-NLS-1$
+			if(std.matches("(c|gnu)\\+\\+(98|03)")) { //$NON-NLS-1$
+				version = "199711L"; //$NON-NLS-1$
+			}
+			else if(std.matches("(c|gnu)\\+\\+(11|0x)")) { //$NON-NLS-1$
+				version = "201103L"; //$NON-NLS-1$
+			}
+			else if(std.matches("(c|gnu)\\+\\+(14|1y)")) { //$NON-NLS-1$
+				version = "201402L"; //$NON-NLS-1$
+			}
+			else if(std.matches("(c|gnu)\\+\\+(17|1z)")) { //$NON-NLS-1$
+				version = "201703L"; //$NON-NLS-1$
+			}
+			else if(std.matches("(c|gnu)\\+\\+(20|2a)")) { //$NON-NLS-1$
+				version = "202002L"; //$NON-NLS-1$
+			}
+			else {
+				macro = "__STDC_VERSION__"; //$NON-NLS-1$
+				if(std.matches("(c|gnu|iso9899:)(99|9x|1999)")) { //$NON-NLS-1$
+					version = "199901L"; //$NON-NLS-1$
+				}
+				else if(std.matches("(c|gnu|iso9899:)(11|1x|2011)")) { //$NON-NLS-1$
+					version = "201112L"; //$NON-NLS-1$
+				}
+				else if(std.matches("(c|gnu|iso9899:)(17|18|2017|2018)")) { //$NON-NLS-1$
+					version = "201710L"; //$NON-NLS-1$
+				}
+			}
+			if(version != null) {
+				macros.add(CDataUtil.createCMacroEntry(macro, version, 0));
+			}
+			if(!std.startsWith("gnu")) { //$NON-NLS-1$
+				macros.add(CDataUtil.createCMacroEntry("__STRICT_ANSI__", "1", 0)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		List<ICLanguageSettingEntry> toList() {
+			List<ICLanguageSettingEntry> entries = new ArrayList<ICLanguageSettingEntry>();
+			entries.addAll(quoteIncludes);
+			entries.addAll(includes);
+			entries.addAll(systemIncludes);
+			entries.addAll(files);
+			entries.addAll(macros);
+			return Collections.unmodifiableList(entries);
+		}
+	}
+
+	private static String unquote(String arg) {
+		if(arg.length() >= 2 && (arg.charAt(0) == '"' || arg.charAt(0) == '\'') && arg.charAt(arg.length() - 1) == arg.charAt(0)) {
+			return arg.substring(1, arg.length() - 1);
+		}
+		return arg;
+	}
+
+	private static IPath makeAbsolute(String path, IPath base) {
+		IPath p = new Path(path);
+		return p.isAbsolute() ? p : base.append(p);
+	}
+
+	/**
+	 * @return the CDT language id of a CMake language name, <code>null</code> if unknown
+	 */
+	private static String getLanguageId(String cmakeLanguage) {
+		if("C".equals(cmakeLanguage)) { //$NON-NLS-1$
+			return CompilerInfo.LANG_C;
+		}
+		if("CXX".equals(cmakeLanguage)) { //$NON-NLS-1$
+			return CompilerInfo.LANG_CXX;
+		}
+		if("ASM".equals(cmakeLanguage)) { //$NON-NLS-1$
+			return CompilerInfo.LANG_ASM;
+		}
+		return null;
+	}
+
+	private static JSONObject readJson(File file) throws IOException, JSONException {
+		FileReader reader = new FileReader(file);
+		try {
+			return new JSONObject(new JSONTokener(reader));
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -12,25 +12,33 @@ package org.eclipse.cdt.cmake.langset;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.prefs.BackingStoreException;
 
 import org.eclipse.cdt.cmake.Activator;
 import org.eclipse.cdt.cmake.CMakeOutputPath;
 import org.eclipse.cdt.cmake.CMakeSettings;
 import org.eclipse.cdt.cmake.langset.IBuildCommandParserEx.CompileUnitInfo;
+import org.eclipse.cdt.cmake.ui.PreferenceConstants;
 import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvider;
 import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsBaseProvider;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.cdt.managedbuilder.language.settings.providers.AbstractBuildCommandParser.ResourceScope;
+import org.eclipse.core.filesystem.URIUtil;
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IProjectDescription;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -47,7 +55,15 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 		implements ILanguageSettingsProvider {
 
 	static final String COMPILE_CMDS_FILENAME = "compile_commands.json"; 
+	// project preference with the timestamp of the compile database the entries were computed from
+	private static final String TIMESTAMP_KEY_PREFIX = "LangSetProv/"; //$NON-NLS-1$
+	private static final String STORE_SUFFIX = ".bin"; //$NON-NLS-1$
+	// virtual folder with links to the sources outside the project
+	private static final String FOREIGN_SOURCES_FOLDER = "ForeignSources"; //$NON-NLS-1$
 	IBuildCommandParserEx m_commandParser = null;
+
+	// key: project name + "/" + configuration id
+	private HashMap<String, LangSetEntryStore> m_entryStores = new HashMap<String, LangSetEntryStore>();
 	
 	
 	public CMakeLangSetProvider() {
@@ -86,20 +102,24 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 		
 		IProject proj = rc.getProject();
 		CMakeSettings cms = Activator.getDefault().getSettings();
+		LangSetEntryStore store = null;
 		if(proj != null) {
+			store = getEntryStore(proj, cfgDescription);
 			CompileCmdsHandler cmdHdl = cms.getCompileCmds(proj, cfgDescription.getName());
 			if(cmdHdl != null) {
 				try {
 					ProjectScope ps = new ProjectScope(proj);
 					IEclipsePreferences prefs = ps.getNode( Activator.getId() );
 					
-					String key = "LangSetProv/" + cmdHdl.getFilename();
+					String key = TIMESTAMP_KEY_PREFIX + cmdHdl.getFilename();
 					Long value = prefs.getLong(key, 0);
 
 					Long current_ts = cmdHdl.getFileModTime();
 
 					
-					if( value.longValue() != current_ts.longValue() ) {
+					// an empty store that was not filled in this session means the entries were never persisted 
+					// (or could not be read back)
+					if( value.longValue() != current_ts.longValue() || (store != null && store.isEmpty() && !store.isUpdated()) ) {
 						parseCompileComands(proj, cfgDescription, cmdHdl );
 
 						prefs.putLong(key, current_ts);
@@ -114,9 +134,122 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 
 	
 		List<ICLanguageSettingEntry> entries = null;
-		entries = m_commandParser.getSettingEntries(cfgDescription, rc, languageId);
+		if(store != null) {
+			// the store always holds what the command parser computed for this configuration, 
+			// also if the parser did not run in this session
+			String rcKey = LangSetEntryStore.getResourceKey(rc);
+			entries = store.get(rcKey, languageId);
+			if(entries == null && languageId != null) {
+				entries = store.get(rcKey, null);
+			}
+		}
+		else {
+			entries = m_commandParser.getSettingEntries(cfgDescription, rc, languageId);
+		}
 		return entries;
 	}
+
+	/**
+	 * @return the persistent entry store of the given configuration, 
+	 *         <code>null</code> if persisting language settings is turned off
+	 */
+	private synchronized LangSetEntryStore getEntryStore(IProject project, ICConfigurationDescription cfgDescription) {
+		if(!Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.P_LANGSET_PERSIST)) {
+			return null;
+		}
+		String key = project.getName() + "/" + cfgDescription.getId(); //$NON-NLS-1$
+		LangSetEntryStore store = m_entryStores.get(key);
+		if(store == null) {
+			File file = getStoreDir().append(project.getName()).append(cfgDescription.getId() + STORE_SUFFIX).toFile();
+			store = new LangSetEntryStore(file);
+			store.load();
+			m_entryStores.put(key, store);
+		}
+		return store;
+	}
+
+	private static IPath getStoreDir() {
+		return Activator.getDefault().getStateLocation().append("langset"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Drops all entry stores in memory and on disk, and the timestamps telling which compile database 
+	 * they were computed from. Called by the {@link Activator} when persisting is turned on or off: 
+	 * the stores miss what was parsed in between, and without them the parser has to run again.
+	 */
+	public synchronized void resetEntryStores() {
+		for(LangSetEntryStore store: m_entryStores.values()) {
+			store.close();
+		}
+		m_entryStores.clear();
+		deleteFiles(getStoreDir().toFile());
+		for(IProject project: ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+			if(!project.isOpen()) {
+				continue;
+			}
+			IEclipsePreferences prefs = new ProjectScope(project).getNode(Activator.getId());
+			try {
+				for(String key: prefs.keys()) {
+					if(key.startsWith(TIMESTAMP_KEY_PREFIX)) {
+						prefs.remove(key);
+					}
+				}
+				prefs.flush();
+			} catch (org.osgi.service.prefs.BackingStoreException e) {
+				Activator.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Drops the entry stores of a project, in memory and on disk.
+	 *
+	 * @param keepCfgIds ids of the configurations whose stores are kept, <code>null</code> to drop all
+	 */
+	public synchronized void dropEntryStores(String projectName, Set<String> keepCfgIds) {
+		String prefix = projectName + "/"; //$NON-NLS-1$
+		Iterator<Map.Entry<String, LangSetEntryStore>> it = m_entryStores.entrySet().iterator();
+		while(it.hasNext()) {
+			Map.Entry<String, LangSetEntryStore> entry = it.next();
+			if(entry.getKey().startsWith(prefix) && (keepCfgIds == null || !keepCfgIds.contains(entry.getKey().substring(prefix.length())))) {
+				entry.getValue().close();
+				it.remove();
+			}
+		}
+		File projectDir = getStoreDir().append(projectName).toFile();
+		if(keepCfgIds == null) {
+			deleteFiles(projectDir);
+			return;
+		}
+		File[] files = projectDir.listFiles();
+		for(int i = 0; files != null && i < files.length; i++) {
+			String name = files[i].getName();
+			if(!name.endsWith(STORE_SUFFIX) || !keepCfgIds.contains(name.substring(0, name.length() - STORE_SUFFIX.length()))) {
+				files[i].delete();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the stores of projects that no longer exist in the workspace, e.g. deleted while 
+	 * this plug-in was not active.
+	 */
+	public static void deleteOrphanedEntryStores() {
+		File[] projectDirs = getStoreDir().toFile().listFiles();
+		for(int i = 0; projectDirs != null && i < projectDirs.length; i++) {
+			if(!ResourcesPlugin.getWorkspace().getRoot().getProject(projectDirs[i].getName()).exists()) {
+				deleteFiles(projectDirs[i]);
+			}
+		}
+	}
+
+	private static void deleteFiles(File file) {
+		File[] children = file.listFiles();
+		for(int i = 0; children != null && i < children.length; i++) {
+			deleteFiles(children[i]);
+		}
+		file.delete();
+	}
 	
 	public void parseCompileComands( IProject project, ICConfigurationDescription cfgDescription, CompileCmdsHandler cmdHdl ) {
 		
@@ -129,14 +262,39 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 					job.schedule();
 				}
 	
-				m_commandParser.startup(cfgDescription, cwdTracker);
-				// commandParser.setResourceScope(ResourceScope.PROJECT);
-	
-				for(CompileUnitInfo cu: cmdHdl.getSources()) {
-					m_commandParser.processLine(cu.getCmdLine());
+				LangSetEntryStore store = getEntryStore(project, cfgDescription);
+				if(store != null) {
+					store.beginUpdate();
+				}
+				// the code model of the file API holds the entries per compile group, ready to use. 
+				// It is missing if cmake is older than 3.14
+				List<CMakeFileApi.Target> targets = CMakeFileApi.read(new Path(cmdHdl.getFilename()).removeLastSegments(1), cfgDescription.getName());
+				// the parser is shared by all configurations, one parse at a time must feed its own store
+				synchronized (m_commandParser) {
+					m_commandParser.setEntryStore(store);
+
+					try {
+						if(targets != null) {
+							putCodeModelEntries(project, cfgDescription, targets);
+						}
+						else {
+							m_commandParser.startup(cfgDescription, cwdTracker);
+							// commandParser.setResourceScope(ResourceScope.PROJECT);
+							for(CompileUnitInfo cu: cmdHdl.getSources()) {
+								m_commandParser.processLine(cu.getCmdLine());
+							}
+							// shutdown triggers some action that might access the compile command, so detect it before 
+							m_commandParser.shutdown();
+						}
+					}
+					finally {
+						m_commandParser.setEntryStore(null);
+						if(store != null) {
+							// only resources whose entries changed were appended to the store
+							store.endUpdate();
+						}
+					}
 				}
-				// shutdown triggers some action that might access the compile command, so detect it before 
-				m_commandParser.shutdown();
 			} 
 			catch (CoreException e) {
 				// TODO Auto-generated catch block
@@ -149,6 +307,51 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 	}
 
 
+	/**
+	 * Sets the entries of all sources of the code model on the parser, which passes them on to its store, 
+	 * if any. Sources outside the project are set on their link in the foreign sources folder.
+	 * Each source dir is resolved to its folder in the project once, sources are looked up by name in it.
+	 * Must be called with the parser locked.
+	 */
+	private void putCodeModelEntries(IProject project, ICConfigurationDescription cfgDescription, List<CMakeFileApi.Target> targets) {
+		IPath projectLocation = project.getLocation();
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+		Map<IPath, IContainer> containers = new HashMap<IPath, IContainer>();
+		for(CMakeFileApi.Target target: targets) {
+			for(CMakeFileApi.Source source: target.getSources()) {
+				IPath dir = source.getPath().removeLastSegments(1);
+				String name = source.getPath().lastSegment();
+				if(name == null) {
+					continue;
+				}
+				IContainer container = containers.get(dir);
+				if(container == null && !containers.containsKey(dir)) {
+					// the folder itself, or a link to it
+					for(IContainer c: root.findContainersForLocationURI(URIUtil.toURI(dir))) {
+						if(c.getProject().equals(project)) {
+							container = c;
+							break;
+						}
+					}
+					if(container == null && projectLocation != null && projectLocation.isPrefixOf(dir)) {
+						// not refreshed yet
+						IPath relative = dir.makeRelativeTo(projectLocation);
+						container = relative.isEmpty() ? project : project.getFolder(relative);
+					}
+					containers.put(dir, container);
+				}
+				// not in the project: linked by AddForeignSourcesWorkspaceJob
+				IFile file = container != null ? container.getFile(new Path(name)) : getForeignSourcesFolder(project).getFile(name);
+				m_commandParser.setSettingEntries(cfgDescription, file, source.getLanguageId(), source.getEntries());
+			}
+		}
+	}
+
+	private static IFolder getForeignSourcesFolder(IProject project) {
+		return project.getFolder(new Path(FOREIGN_SOURCES_FOLDER));
+	}
+
+
 	class AddForeignSourcesWorkspaceJob extends WorkspaceJob {
 
 		private List<CompileUnitInfo> cuInfoList = null;
@@ -169,7 +372,7 @@ public class CMakeLangSetProvider extends LanguageSettingsBaseProvider
 		@Override
 		public IStatus runInWorkspace(IProgressMonitor monitor)	throws CoreException {
 			try {
-				IFolder fsFolder = project.getFolder(new Path("ForeignSources"));
+				IFolder fsFolder = getForeignSourcesFolder(project);
 				if(!fsFolder.exists()) {
 					fsFolder.create(IResource.VIRTUAL, true, null);
 				}
@@ -14,9 +14,16 @@ package org.eclipse.cdt.cmake.langset;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.cdt.cmake.Activator;
 import org.eclipse.cdt.cmake.langset.IBuildCommandParserEx.CompileUnitInfo;
@@ -39,14 +46,20 @@ public class CompileCmdsHandler {
 	private String configName = null;
 	private IProject project = null;
 	private String filename = null;
+	private CompileCmdsPool pool = null;
+	private boolean parsed = false;
+	private CompileCmdsIndex index = null;
+	// distinct compilers by CompilerInfo.getKey()
+	private volatile Map<String, CompilerInfo> compilers = new LinkedHashMap<String, CompilerInfo>();
 
 	private String xCompExe;
 	private String xCompPath;
 	private String xCompCmd;
 	private String xCompFlags;
 	
-	private List<CompileUnitInfo> foreignSources = new ArrayList<CompileUnitInfo>();
-	private List<CompileUnitInfo> sources = new ArrayList<CompileUnitInfo>();
+	// replaced as a whole by each parse, never changed in place, so readers can iterate them without a lock
+	private volatile List<CompileUnitInfo> foreignSources = new ArrayList<CompileUnitInfo>();
+	private volatile List<CompileUnitInfo> sources = new ArrayList<CompileUnitInfo>();
 	
 	public static final String COMPILE_CMDS_FILENAME = "compile_commands.json";
 	public static final String CROSS_GCC_TOOL_ID = "org.eclipse.cdt.cmake.compiler.c"; 
@@ -55,11 +68,22 @@ public class CompileCmdsHandler {
 	public static final String CROSS_TOOLCHAIN_PREFIX_OPTION_ID = "org.eclipse.cdt.cmake.cross.prefix";
 	public static final String CROSS_TOOLCHAIN_PATH_OPTION_ID = "cdt.managedbuild.option.gnu.cross.path";
 
+	private static final Set<String> COMPILER_LAUNCHERS = new HashSet<String>(Arrays.asList(
+			"ccache", "distcc", "icecc", "sccache")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
 	public CompileCmdsHandler(IProject project, String configName, String filename) {
 		this.configName = configName;
 		this.project = project;
 		this.filename = filename;
 	}
+
+	/**
+	 * @param pool storage shared with the other configurations of the project
+	 */
+	public CompileCmdsHandler(IProject project, String configName, String filename, CompileCmdsPool pool) {
+		this(project, configName, filename);
+		this.pool = pool;
+	}
 	
 	/**
 	 * @return the filename
@@ -74,6 +98,10 @@ public class CompileCmdsHandler {
 		return current_ts;
 	}
 
+	public IProject getProject() {
+		return this.project;
+	}
+
 	public String getProjectName() {
 		return this.project.getName();
 	}
@@ -111,13 +139,32 @@ public class CompileCmdsHandler {
 		this.xCompPath = compilerPath;
 	}
 	
+	/**
+	 * @return true, if compile_commands.json was parsed successfully at least once
+	 */
+	public synchronized boolean isParsed() {
+		return parsed;
+	}
+
+	/**
+	 * Parses compile_commands.json into new lists of compile units. They replace the current ones 
+	 * only when parsing has succeeded, until then readers keep getting the old ones.
+	 */
 	public void parseCMakeCompileCommands() throws FileNotFoundException, JSONException  {
-		foreignSources.clear();
-		sources.clear();
+		List<CompileUnitInfo> newSources = new ArrayList<CompileUnitInfo>();
 		
 		FileReader reader = new FileReader(this.filename);
-		JSONTokener tokener = new JSONTokener(reader);
-		JSONArray rootArray = new JSONArray(tokener);
+		JSONArray rootArray;
+		try {
+			rootArray = new JSONArray(new JSONTokener(reader));
+		}
+		finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
 		
 		for(int i=0; i < rootArray.length(); i++) {
 
@@ -129,12 +176,24 @@ public class CompileCmdsHandler {
 				String command = jobj.getString("command");
 				String sourceFile = jobj.getString("file");
 
-				CompileUnitInfo cu = new CompileUnitInfo(sourceFile, new Path(directory), command);
-				sources.add(cu);
-				
-				detectCompiler();
+				CompileUnitInfo cu;
+				if(pool != null) {
+					cu = new CompileUnitInfo(pool.intern(sourceFile), pool.internPath(directory), pool.tokenize(command));
+				}
+				else {
+					cu = new CompileUnitInfo(sourceFile, new Path(directory), command);
+				}
+				newSources.add(cu);
 			}
 		}
+		Map<String, CompilerInfo> newCompilers = detectCompilers(newSources);
+		synchronized (this) {
+			sources = newSources;
+			foreignSources = new ArrayList<CompileUnitInfo>();
+			compilers = newCompilers;
+			index = null;
+			parsed = true;
+		}
 	}
 
 	public boolean isOutsideProject(CompileUnitInfo cu) {
@@ -142,26 +201,61 @@ public class CompileCmdsHandler {
 		return false;
 	}
 	
-	protected void detectCompiler()  {
+	/**
+	 * Builds the table of distinct compilers and assigns each compile unit its compiler.
+	 * The first compile unit's compiler is also provided by {@link #getxCompCmd()} etc.
+	 *
+	 * @return the distinct compilers by {@link CompilerInfo#getKey()}
+	 */
+	protected Map<String, CompilerInfo> detectCompilers(List<CompileUnitInfo> sources)  {
 
-		if(sources.size() < 1 ) {
-			return;
+		Map<String, CompilerInfo> compilers = new LinkedHashMap<String, CompilerInfo>();
+		for(CompileUnitInfo cui: sources) {
+			CompilerInfo compiler = detectCompiler(cui);
+			if(compiler != null) {
+				CompilerInfo known = compilers.get(compiler.getKey());
+				if(known == null) {
+					compilers.put(compiler.getKey(), compiler);
+					known = compiler;
+				}
+				known.addUnit(CompilerInfo.getLanguageId(cui.getCuFileName()));
+			}
+			cui.setCompiler(compiler);
 		}
-		
-		CompileUnitInfo cui = sources.get(0);
 
-		String compilerCommand = "";
-		String flags = "";
+		if(sources.size() < 1 || sources.get(0).getCompiler() == null) {
+			return compilers;
+		}
+		CompilerInfo first = sources.get(0).getCompiler();
+	    xCompCmd = first.getCommand();
+	    
+	    java.nio.file.Path compCmd = Paths.get(xCompCmd);
+		xCompPath = compCmd.getParent() == null ? "" : compCmd.getParent().toString();
+		xCompExe = compCmd.getFileName().toString();
+
+	    xCompFlags = first.getFlags();
+	    return compilers;
+	}
+
+	/**
+	 * @return the compiler of one compile unit, <code>null</code> if the command line holds none
+	 */
+	protected CompilerInfo detectCompiler(CompileUnitInfo cui) {
+
+		String compilerCommand = null;
 		String sysrootPath = "";
+		StringBuilder targetFlags = new StringBuilder();
 		boolean nextPartIsSysrootPath = false;
 
-		String cmd = cui.getCmdLine();
-		String[] parts = cmd.split(" ");
-		for(String part: parts) {
-			
-			if(part.endsWith("gcc") || part.endsWith("g++") || part.endsWith("c++") || part.endsWith("cc") ) {
-				// this is the compiler part
-				compilerCommand = part ;
+		for(String part: cui.getCmdArgs()) {
+			if(part.isEmpty()) {
+				continue;
+			}
+			if(compilerCommand == null) {
+				// skip launchers like ccache and distcc, the compiler is the first argument after them
+				if(!COMPILER_LAUNCHERS.contains(new Path(part).removeFileExtension().lastSegment())) {
+					compilerCommand = part ;
+				}
 				continue;
 			}
 			if(part.startsWith("--sysroot")) {
@@ -180,21 +274,45 @@ public class CompileCmdsHandler {
 			if(nextPartIsSysrootPath == true) {
 				sysrootPath = part;
 				nextPartIsSysrootPath = false;
+				continue;
 			}
+			// target options select different builtin macros of the same compiler
+			if(part.startsWith("-m") || part.startsWith("--target=")) {
+				targetFlags.append(' ').append(part);
+			}
+		}
+		if(compilerCommand == null) {
+			return null;
 		}
 		
-	
+		String flags = "";
 	    if(!sysrootPath.isEmpty()) {
 	    	flags += "--sysroot " + sysrootPath;
 	    }
+	    flags = (flags + targetFlags).trim();
 
-	    xCompCmd = compilerCommand;
-	    
-	    java.nio.file.Path compCmd = Paths.get(compilerCommand);
-		xCompPath = compCmd.getParent().toString();
-		xCompExe = compCmd.getFileName().toString();
+	    return new CompilerInfo(compilerCommand, flags);
+	}
 
-	    xCompFlags = flags;
+	/**
+	 * @return the distinct compilers used in compile_commands.json
+	 */
+	public Collection<CompilerInfo> getCompilers() {
+		return compilers.values();
+	}
+
+	/**
+	 * @return the compiler used for most compile units of the given language, 
+	 *         <code>null</code> if there are none of this language
+	 */
+	public CompilerInfo getCompiler(String languageId) {
+		CompilerInfo best = null;
+		for(CompilerInfo compiler: compilers.values()) {
+			if(compiler.getUnitCount(languageId) > (best == null ? 0 : best.getUnitCount(languageId))) {
+				best = compiler;
+			}
+		}
+		return best;
 	}
 
 	
@@ -241,6 +359,16 @@ public class CompileCmdsHandler {
 		return sources;
 	}
 
+	/**
+	 * @return lookup tables over the compile units, built on first use after each parse
+	 */
+	public synchronized CompileCmdsIndex getIndex() {
+		if(index == null) {
+			index = new CompileCmdsIndex(sources);
+		}
+		return index;
+	}
+
 	/**
 	 * @return
 	 */
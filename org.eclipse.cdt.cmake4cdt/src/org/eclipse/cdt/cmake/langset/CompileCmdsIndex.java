@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.cmake.langset.IBuildCommandParserEx.CompileUnitInfo;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Lookup tables over the compile units of one compile_commands.json.
+ * Built once per parse by {@link CompileCmdsHandler#getIndex()}.
+ */
+public class CompileCmdsIndex {
+
+	private Map<String, CompileUnitInfo> unitsByFile = new HashMap<String, CompileUnitInfo>();
+	private Map<String, List<String>> filesByDir = new HashMap<String, List<String>>();
+	private Map<String, List<String>> filesByFlag = new HashMap<String, List<String>>();
+	private Map<String, List<String>> filesByMacro = new HashMap<String, List<String>>();
+
+	CompileCmdsIndex(List<CompileUnitInfo> sources) {
+		for(CompileUnitInfo cu: sources) {
+			String file = getAbsoluteFileName(cu);
+			unitsByFile.put(file, cu);
+			if(cu.getWorkDir() != null) {
+				add(filesByDir, cu.getWorkDir().toPortableString(), file);
+			}
+
+			String[] args = cu.getCmdArgs();
+			// args[0] is the compiler
+			for(int i = 1; i < args.length; i++) {
+				String arg = args[i];
+				if(!arg.startsWith("-")) { //$NON-NLS-1$
+					continue;
+				}
+				add(filesByFlag, arg, file);
+				if(arg.startsWith("-D")) { //$NON-NLS-1$
+					String macro = arg.substring(2);
+					if(macro.isEmpty() && i + 1 < args.length) {
+						// "-D NAME"
+						macro = args[i + 1];
+					}
+					int eq = macro.indexOf('=');
+					if(eq >= 0) {
+						macro = macro.substring(0, eq);
+					}
+					if(!macro.isEmpty()) {
+						add(filesByMacro, macro, file);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the absolute path of the compile unit's source file, as used as key in this index
+	 */
+	public static String getAbsoluteFileName(CompileUnitInfo cu) {
+		IPath path = new Path(cu.getCuFileName());
+		if(!path.isAbsolute() && cu.getWorkDir() != null) {
+			path = cu.getWorkDir().append(path);
+		}
+		return path.toPortableString();
+	}
+
+	private static void add(Map<String, List<String>> map, String key, String file) {
+		List<String> files = map.get(key);
+		if(files == null) {
+			files = new ArrayList<String>(1);
+			map.put(key, files);
+		}
+		// the same flag may appear twice on one command line
+		if(files.isEmpty() || !files.get(files.size() - 1).equals(file)) {
+			files.add(file);
+		}
+	}
+
+	private static List<String> get(Map<String, List<String>> map, String key) {
+		List<String> files = map.get(key);
+		return files == null ? Collections.<String>emptyList() : Collections.unmodifiableList(files);
+	}
+
+	public CompileUnitInfo getUnit(String file) {
+		return unitsByFile.get(file);
+	}
+
+	public List<String> getFiles() {
+		return Collections.unmodifiableList(new ArrayList<String>(unitsByFile.keySet()));
+	}
+
+	public List<String> getFilesInDirectory(String dir) {
+		return get(filesByDir, dir);
+	}
+
+	public List<String> getFilesWithFlag(String flag) {
+		return get(filesByFlag, flag);
+	}
+
+	public List<String> getFilesWithMacro(String macro) {
+		return get(filesByMacro, macro);
+	}
+}
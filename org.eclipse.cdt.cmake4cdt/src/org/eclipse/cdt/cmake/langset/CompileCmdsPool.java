@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Storage shared by the compile databases of all build configurations of one project.
+ *
+ * The compile_commands.json files of e.g. Debug and Release differ only in a few
+ * flags (-O, -g, -DNDEBUG). Source file names, working directories and the single
+ * command line arguments (include dirs, macros, ...) are stored here once and referenced
+ * by the {@link IBuildCommandParserEx.CompileUnitInfo}s of every configuration, so each
+ * configuration effectively only adds the arguments that are specific to it.
+ *
+ * The pool holds its entries weakly: an entry goes away with the last compile unit referring 
+ * to it, so the strings of replaced compile databases do not pile up while the project is open.
+ */
+public class CompileCmdsPool {
+
+	// the value refers to the key, which is only kept alive by the compile units using it
+	private WeakHashMap<String, WeakReference<String>> strings = new WeakHashMap<String, WeakReference<String>>();
+	private WeakHashMap<IPath, WeakReference<IPath>> paths = new WeakHashMap<IPath, WeakReference<IPath>>();
+
+	public synchronized String intern(String str) {
+		WeakReference<String> ref = strings.get(str);
+		String pooled = ref == null ? null : ref.get();
+		if(pooled == null) {
+			strings.put(str, new WeakReference<String>(str));
+			pooled = str;
+		}
+		return pooled;
+	}
+
+	public synchronized IPath internPath(String dir) {
+		IPath path = new Path(dir);
+		WeakReference<IPath> ref = paths.get(path);
+		IPath pooled = ref == null ? null : ref.get();
+		if(pooled == null) {
+			paths.put(path, new WeakReference<IPath>(path));
+			pooled = path;
+		}
+		return pooled;
+	}
+
+	/**
+	 * Splits a compiler command line into its arguments, each of them taken from the pool.
+	 * Joining the result with a single blank gives back the original command line.
+	 */
+	public synchronized String[] tokenize(String cmdLine) {
+		String[] args = cmdLine.split(" ", -1); //$NON-NLS-1$
+		for(int i = 0; i < args.length; i++) {
+			args[i] = intern(args[i]);
+		}
+		return args;
+	}
+
+	/**
+	 * @return the number of distinct strings held by this pool
+	 */
+	public synchronized int size() {
+		return strings.size() + paths.size();
+	}
+
+	public synchronized void clear() {
+		strings.clear();
+		paths.clear();
+	}
+}
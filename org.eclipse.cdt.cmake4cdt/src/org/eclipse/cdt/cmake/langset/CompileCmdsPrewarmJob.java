@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.cmake.CMakeProjectNature;
+import org.eclipse.cdt.cmake.CMakeSettings;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.IJobChangeListener;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+/**
+ * Loads the compile databases of the active configuration of all open CMake projects
+ * into {@link CMakeSettings}, so the first indexer pass does not have to wait for them.
+ *
+ * The databases are loaded in parallel, at most one per available processor.
+ * The job cancels itself as soon as a build is started.
+ */
+public class CompileCmdsPrewarmJob extends Job {
+
+	private List<Future<?>> loads = new ArrayList<Future<?>>();
+	private volatile boolean canceling = false;
+
+	public CompileCmdsPrewarmJob() {
+		super("Loading CMake compile databases"); //$NON-NLS-1$
+		setPriority(Job.DECORATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected IStatus run(final IProgressMonitor monitor) {
+		canceling = false;
+		List<IProject> projects = new ArrayList<IProject>();
+		for(IProject project: ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+			try {
+				if(project.isOpen() && project.hasNature(CMakeProjectNature.CMAKE_NATURE_ID)) {
+					projects.add(project);
+				}
+			} catch (CoreException e) {
+				Activator.log(e);
+			}
+		}
+		if(projects.isEmpty()) {
+			return Status.OK_STATUS;
+		}
+
+		IJobChangeListener buildListener = new JobChangeAdapter() {
+			@Override
+			public void scheduled(IJobChangeEvent event) {
+				Job job = event.getJob();
+				if(job.belongsTo(ResourcesPlugin.FAMILY_MANUAL_BUILD) || job.belongsTo(ResourcesPlugin.FAMILY_AUTO_BUILD)) {
+					CompileCmdsPrewarmJob.this.cancel();
+				}
+			}
+		};
+		Job.getJobManager().addJobChangeListener(buildListener);
+
+		int nThreads = Math.min(projects.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		monitor.beginTask(getName(), projects.size());
+		try {
+			final CMakeSettings cms = Activator.getDefault().getSettings();
+			for(final IProject project: projects) {
+				addLoad(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						if(monitor.isCanceled()) {
+							return null;
+						}
+						ICProjectDescription projDesc = CoreModel.getDefault().getProjectDescription(project, false);
+						if(projDesc != null) {
+							ICConfigurationDescription activeCfg = projDesc.getActiveConfiguration();
+							if(activeCfg != null) {
+								cms.getCompileCmds(project, activeCfg.getName());
+							}
+						}
+						return null;
+					}
+				}));
+			}
+
+			for(Future<?> load: getLoads()) {
+				try {
+					load.get();
+				} catch (ExecutionException e) {
+					Activator.log(e.getCause());
+				} catch (CancellationException e) {
+					return Status.CANCEL_STATUS;
+				} catch (InterruptedException e) {
+					return Status.CANCEL_STATUS;
+				}
+				monitor.worked(1);
+			}
+			if(monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+		}
+		finally {
+			Job.getJobManager().removeJobChangeListener(buildListener);
+			// loads that already started finish in the background, interrupting them would only waste 
+			// the parsing done so far. Queued ones return at once if the job was canceled
+			executor.shutdown();
+			synchronized (loads) {
+				loads.clear();
+			}
+			monitor.done();
+		}
+		return Status.OK_STATUS;
+	}
+
+	private void addLoad(Future<?> load) {
+		synchronized (loads) {
+			loads.add(load);
+		}
+		if(canceling) {
+			load.cancel(false);
+		}
+	}
+
+	private List<Future<?>> getLoads() {
+		synchronized (loads) {
+			return new ArrayList<Future<?>>(loads);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.jobs.Job#canceling()
+	 */
+	@Override
+	protected void canceling() {
+		canceling = true;
+		// wakes up run(), which is blocked in Future.get()
+		for(Future<?> load: getLoads()) {
+			load.cancel(false);
+		}
+	}
+}
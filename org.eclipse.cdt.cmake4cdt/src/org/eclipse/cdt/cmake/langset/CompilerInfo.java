@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One distinct compiler found in compile_commands.json: the compiler command (with ccache, distcc and 
+ * the like removed) and the flags that influence its builtin include paths and macros.
+ */
+public class CompilerInfo {
+
+	public static final String LANG_C = "org.eclipse.cdt.core.gcc"; //$NON-NLS-1$
+	public static final String LANG_CXX = "org.eclipse.cdt.core.g++"; //$NON-NLS-1$
+	public static final String LANG_ASM = "org.eclipse.cdt.core.assembly"; //$NON-NLS-1$
+
+	private final String command;
+	private final String flags;
+	// number of compile units per language id compiled by this compiler
+	private final Map<String, Integer> unitCounts = new HashMap<String, Integer>();
+
+	public CompilerInfo(String command, String flags) {
+		this.command = command;
+		this.flags = flags;
+	}
+
+	/**
+	 * @return the key that identifies this compiler within one compile database
+	 */
+	public static String getKey(String command, String flags) {
+		return command + '\n' + flags;
+	}
+
+	/**
+	 * @return the language id for a source file, judged by its extension, <code>null</code> if unknown
+	 */
+	public static String getLanguageId(String fileName) {
+		int dot = fileName.lastIndexOf('.');
+		if(dot < 0) {
+			return null;
+		}
+		String ext = fileName.substring(dot + 1);
+		if(ext.equals("c")) { //$NON-NLS-1$
+			return LANG_C;
+		}
+		if(ext.equals("s") || ext.equals("S") || ext.equals("asm")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			return LANG_ASM;
+		}
+		if(ext.equals("cpp") || ext.equals("cc") || ext.equals("cxx") || ext.equals("c++") || ext.equals("C")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			return LANG_CXX;
+		}
+		return null;
+	}
+
+	public String getCommand() {
+		return command;
+	}
+
+	public String getFlags() {
+		return flags;
+	}
+
+	public String getKey() {
+		return getKey(command, flags);
+	}
+
+	void addUnit(String languageId) {
+		if(languageId == null) {
+			return;
+		}
+		Integer count = unitCounts.get(languageId);
+		unitCounts.put(languageId, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * @return the number of compile units of the given language compiled by this compiler
+	 */
+	public int getUnitCount(String languageId) {
+		Integer count = unitCounts.get(languageId);
+		return count == null ? 0 : count;
+	}
+
+	public Set<String> getLanguageIds() {
+		return unitCounts.keySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return flags.isEmpty() ? command : command + ' ' + flags;
+	}
+}
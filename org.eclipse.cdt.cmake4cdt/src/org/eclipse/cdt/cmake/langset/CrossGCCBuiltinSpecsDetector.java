@@ -13,20 +13,280 @@
 package org.eclipse.cdt.cmake.langset;
 
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.eclipse.cdt.cmake.Activator;
 import org.eclipse.cdt.cmake.CMakeSettings;
+import org.eclipse.cdt.cmake.langset.IBuildCommandParserEx.CompileUnitInfo;
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
+import org.eclipse.cdt.core.model.ILanguage;
+import org.eclipse.cdt.core.model.LanguageManager;
+import org.eclipse.cdt.core.resources.IConsole;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.internal.core.ICConsole;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
 import org.eclipse.cdt.managedbuilder.language.settings.providers.GCCBuiltinSpecsDetector;
+import org.eclipse.cdt.utils.CommandLineUtil;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
 
 public class CrossGCCBuiltinSpecsDetector extends GCCBuiltinSpecsDetector {
 
+	private static final long PROBE_POLL_MS = 200;
+	private static final String SCANNER_DISCOVERY_CONSOLE = "org.eclipse.cdt.managedbuilder.ScannerDiscoveryConsole"; //$NON-NLS-1$
+
+	// compile units with entries of a compiler other than the main one of their language
+	private Map<IResource, String> otherCompilerResources = new HashMap<IResource, String>();
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.language.settings.providers.AbstractBuiltinSpecsDetector#runForEachLanguage(org.eclipse.core.runtime.IProgressMonitor)
+	 */
 	@Override
-	protected String getCompilerCommand(String languageId) {
-		// use as fallback value
-		String cmd = super.getCompilerCommand(languageId);
-		
+	protected IStatus runForEachLanguage(IProgressMonitor monitor) {
+		List<String> languageIds = getLanguageScope();
+		if(languageIds == null || currentCfgDescription == null) {
+			return super.runForEachLanguage(monitor);
+		}
+
+		// start all probes at once, the main compiler of each language and the other compilers of single 
+		// compile units. Probes of a toolchain that is being detected for another project are shared.
+		Map<String, Future<BuiltinSpecsProbe.Result>> results = new HashMap<String, Future<BuiltinSpecsProbe.Result>>();
+		Map<String, String> mainProbes = new LinkedHashMap<String, String>();
+		String[] envp = getEnvironment();
+		for(String languageId: languageIds) {
+			BuiltinSpecsProbe probe = createProbe(languageId, null, envp);
+			if(probe == null) {
+				continue;
+			}
+			mainProbes.put(languageId, probe.getId());
+			if(!results.containsKey(probe.getId())) {
+				results.put(probe.getId(), BuiltinSpecsProbe.submit(probe));
+			}
+		}
+		CompileCmdsHandler cmdHdl = getCompileCmds();
+		Map<String, List<CompileUnitInfo>> otherProbes = new LinkedHashMap<String, List<CompileUnitInfo>>();
+		if(cmdHdl != null) {
+			for(CompileUnitInfo cu: cmdHdl.getSources()) {
+				String languageId = CompilerInfo.getLanguageId(cu.getCuFileName());
+				CompilerInfo compiler = cu.getCompiler();
+				if(compiler == null || languageId == null || !languageIds.contains(languageId) || compiler == cmdHdl.getCompiler(languageId)) {
+					continue;
+				}
+				BuiltinSpecsProbe probe = createProbe(languageId, compiler, envp);
+				if(probe == null) {
+					continue;
+				}
+				List<CompileUnitInfo> units = otherProbes.get(probe.getId());
+				if(units == null) {
+					units = new ArrayList<CompileUnitInfo>();
+					otherProbes.put(probe.getId(), units);
+					if(!results.containsKey(probe.getId())) {
+						results.put(probe.getId(), BuiltinSpecsProbe.submit(probe));
+					}
+				}
+				units.add(cu);
+			}
+		}
+
+		monitor.beginTask("Detecting builtin compiler settings", mainProbes.size() + otherProbes.size()); //$NON-NLS-1$
+		try {
+			boolean isChanged = false;
+			for(Map.Entry<String, String> mainProbe: mainProbes.entrySet()) {
+				String languageId = mainProbe.getKey();
+				List<ICLanguageSettingEntry> entries = getResult(results.get(mainProbe.getValue()), languageId, monitor);
+				if(entries != null) {
+					List<ICLanguageSettingEntry> oldEntries = getSettingEntries(currentCfgDescription, null, languageId);
+					setSettingEntries(currentCfgDescription, null, languageId, entries);
+					isChanged |= oldEntries != getSettingEntries(currentCfgDescription, null, languageId);
+				}
+				monitor.worked(1);
+			}
+
+			// the other compilers' entries are set on the compile units that use them
+			Map<IResource, String> resources = new HashMap<IResource, String>();
+			IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+			for(Map.Entry<String, List<CompileUnitInfo>> otherProbe: otherProbes.entrySet()) {
+				String languageId = BuiltinSpecsProbe.getLanguageId(otherProbe.getKey());
+				List<ICLanguageSettingEntry> entries = getResult(results.get(otherProbe.getKey()), languageId, monitor);
+				if(entries != null) {
+					for(CompileUnitInfo cu: otherProbe.getValue()) {
+						IFile file = root.getFileForLocation(new Path(CompileCmdsIndex.getAbsoluteFileName(cu)));
+						if(file != null) {
+							resources.put(file, languageId);
+							List<ICLanguageSettingEntry> oldEntries = getSettingEntries(currentCfgDescription, file, languageId);
+							setSettingEntries(currentCfgDescription, file, languageId, entries);
+							isChanged |= oldEntries != getSettingEntries(currentCfgDescription, file, languageId);
+						}
+					}
+				}
+				monitor.worked(1);
+			}
+			if(monitor.isCanceled() || Thread.currentThread().isInterrupted()) {
+				return Status.CANCEL_STATUS;
+			}
+
+			// compile units that have switched to the main compiler since the last run
+			for(Map.Entry<IResource, String> rc: otherCompilerResources.entrySet()) {
+				if(!resources.containsKey(rc.getKey())) {
+					setSettingEntries(currentCfgDescription, rc.getKey(), rc.getValue(), null);
+					isChanged = true;
+				}
+			}
+			otherCompilerResources = resources;
+
+			if(isChanged) {
+				return serializeLanguageSettings(currentCfgDescription);
+			}
+			return Status.OK_STATUS;
+		}
+		finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Creates a probe running the command of this detector, as it can be edited by the user, 
+	 * with <code>${COMMAND}</code>, <code>${FLAGS}</code> and <code>${INPUTS}</code> resolved.
+	 *
+	 * @param compiler the compiler to probe, <code>null</code> for the main compiler of the language
+	 * @return the probe, <code>null</code> if the command could not be resolved
+	 */
+	private BuiltinSpecsProbe createProbe(String languageId, CompilerInfo compiler, String[] envp) {
+		try {
+			String cmd = resolveCommand(languageId, compiler);
+			if(cmd == null || cmd.trim().isEmpty()) {
+				return null;
+			}
+			String command = compiler != null ? compiler.getCommand() : getCompilerCommand(languageId);
+			return new BuiltinSpecsProbe(command, CommandLineUtil.argumentsToArray(cmd), envp, languageId);
+		} catch (CoreException e) {
+			Activator.log(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves the command of this detector like the base class does, but for the given compiler.
+	 *
+	 * @param compiler the compiler to probe, <code>null</code> for the main compiler of the language
+	 */
+	private String resolveCommand(String languageId, CompilerInfo compiler) throws CoreException {
+		if(compiler == null) {
+			return resolveCommand(languageId);
+		}
+		String cmd = getCommand();
+		if(cmd == null) {
+			return null;
+		}
+		cmd = cmd.replace(COMPILER_MACRO, compiler.getCommand());
+		cmd = cmd.replace(FLAGS_MACRO, compiler.getFlags() != null ? compiler.getFlags() : ""); //$NON-NLS-1$
+		if(cmd.contains(SPEC_FILE_MACRO)) {
+			String specFile = getSpecFile(languageId);
+			if(specFile != null) {
+				cmd = cmd.replace(SPEC_FILE_MACRO, specFile);
+			}
+		}
+		if(cmd.contains(SPEC_EXT_MACRO)) {
+			String specExt = getSpecFileExtension(languageId);
+			if(specExt != null) {
+				cmd = cmd.replace(SPEC_EXT_MACRO, specExt);
+			}
+		}
+		return cmd;
+	}
+
+	/**
+	 * @return the build environment of the configuration, with the messages of the compiler in English 
+	 *         as the output is parsed
+	 */
+	private String[] getEnvironment() {
+		IEnvironmentVariable[] vars = CCorePlugin.getDefault().getBuildEnvironmentManager().getVariables(currentCfgDescription, true);
+		List<String> envp = new ArrayList<String>();
+		for(IEnvironmentVariable var: vars) {
+			if(!var.getName().equals("LANGUAGE") && !var.getName().equals("LC_ALL")) { //$NON-NLS-1$ //$NON-NLS-2$
+				envp.add(var.getName() + '=' + var.getValue());
+			}
+		}
+		envp.add("LANGUAGE=en"); //$NON-NLS-1$
+		envp.add("LC_ALL=C"); //$NON-NLS-1$
+		return envp.toArray(new String[envp.size()]);
+	}
+
+	/**
+	 * Waits for the result of a probe, which may be shared with other detectors, and shows the 
+	 * output of the compiler in the console of the detector, if that is enabled.
+	 *
+	 * @return the entries, <code>null</code> if the probe has failed, the monitor was canceled or the thread interrupted
+	 */
+	private List<ICLanguageSettingEntry> getResult(Future<BuiltinSpecsProbe.Result> result, String languageId, IProgressMonitor monitor) {
+		while(!monitor.isCanceled()) {
+			try {
+				BuiltinSpecsProbe.Result probeResult = result.get(PROBE_POLL_MS, TimeUnit.MILLISECONDS);
+				if(isConsoleEnabled() && probeResult.getOutput() != null) {
+					writeToConsole(languageId, probeResult.getOutput());
+				}
+				return probeResult.getEntries();
+			} catch (TimeoutException e) {
+				// check the monitor again
+			} catch (ExecutionException e) {
+				Activator.log(e.getCause());
+				return null;
+			} catch (InterruptedException e) {
+				// not a failed probe, let the caller see the interrupt
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the output of a probe to the scanner discovery console, like the base class does for its own runs.
+	 */
+	private void writeToConsole(String languageId, String output) {
+		try {
+			IConsole console = CCorePlugin.getDefault().getConsole(SCANNER_DISCOVERY_CONSOLE);
+			if(console instanceof ICConsole) {
+				ILanguage language = LanguageManager.getInstance().getLanguage(languageId);
+				String languageName = language != null ? language.getName() : languageId;
+				((ICConsole)console).init(ManagedBuilderCorePlugin.PLUGIN_ID + '.' + getId() + '.' + languageId, getName() + ", " + languageName, null); //$NON-NLS-1$
+			}
+			console.start(currentProject);
+			OutputStream out = console.getOutputStream();
+			out.write(output.getBytes());
+			out.flush();
+		} catch (CoreException e) {
+			Activator.log(e);
+		} catch (IOException e) {
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * @return the compile database of the configuration being detected, <code>null</code> if not available
+	 */
+	private CompileCmdsHandler getCompileCmds() {
+		CompileCmdsHandler cmdHdl = null;
 		if (currentCfgDescription != null) {
-			CompileCmdsHandler cmdHdl = null;
 			String buildConfigName = currentCfgDescription.getName();
 			CMakeSettings cms = Activator.getDefault().getSettings();
 			IProject proj = this.currentProject;
@@ -36,9 +296,19 @@ public class CrossGCCBuiltinSpecsDetector extends GCCBuiltinSpecsDetector {
 			if(proj != null) {
 				cmdHdl = cms.getCompileCmds(proj, buildConfigName);
 			}
-			if( cmdHdl != null) {
-				cmd =  cmdHdl.getxCompCmd();
-			}
+		}
+		return cmdHdl;
+	}
+
+	@Override
+	protected String getCompilerCommand(String languageId) {
+		// use as fallback value
+		String cmd = super.getCompilerCommand(languageId);
+		
+		CompileCmdsHandler cmdHdl = getCompileCmds();
+		if( cmdHdl != null) {
+			CompilerInfo compiler = cmdHdl.getCompiler(languageId);
+			cmd = compiler != null ? compiler.getCommand() : cmdHdl.getxCompCmd();
 		}
 		return cmd; 
 	}
@@ -47,20 +317,10 @@ public class CrossGCCBuiltinSpecsDetector extends GCCBuiltinSpecsDetector {
 	protected String getToolOptions(String languageId) {
 		String flags = "";
 		
-		if (currentCfgDescription != null) {
-			CompileCmdsHandler cmdHdl = null;
-			String buildConfigName = currentCfgDescription.getName();
-			CMakeSettings cms = Activator.getDefault().getSettings();
-			IProject proj = this.currentProject;
-			if(proj == null) {
-				proj = currentCfgDescription.getProjectDescription().getProject();
-			}
-			if(proj != null) {
-				cmdHdl = cms.getCompileCmds(proj, buildConfigName);
-			}
-			if( cmdHdl != null) {
-				flags = cmdHdl.getxCompFlags();
-			}
+		CompileCmdsHandler cmdHdl = getCompileCmds();
+		if( cmdHdl != null) {
+			CompilerInfo compiler = cmdHdl.getCompiler(languageId);
+			flags = compiler != null ? compiler.getFlags() : cmdHdl.getxCompFlags();
 		}
 
 		return flags;
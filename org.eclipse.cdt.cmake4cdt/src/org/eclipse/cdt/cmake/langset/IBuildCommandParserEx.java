@@ -11,8 +11,12 @@
 
 package org.eclipse.cdt.cmake.langset;
 
+import java.util.List;
+
 import org.eclipse.cdt.core.language.settings.providers.ICBuildOutputParser;
 import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvider;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IPath;
 
@@ -37,6 +41,12 @@ public interface IBuildCommandParserEx extends ICBuildOutputParser, ILanguageSet
 		
 		// complete command line of the compiler invocation
 		private String cmdLine = null;
+
+		// command line split into arguments, taken from a CompileCmdsPool. cmdLine is built from it on demand 
+		private String[] cmdArgs = null;
+
+		// compiler used for this cu, one of the distinct compilers of the compile database
+		private CompilerInfo compiler = null;
 		
 		
 		CompileUnitInfo(String rcName, IResource rc) {
@@ -49,6 +59,12 @@ public interface IBuildCommandParserEx extends ICBuildOutputParser, ILanguageSet
 			this.workDir = directory;
 			this.cmdLine = compileCommand;
 		}
+
+		CompileUnitInfo(String cuFileName, IPath directory, String[] compileArgs) {
+			this.setCuFileName(cuFileName);
+			this.workDir = directory;
+			this.cmdArgs = compileArgs;
+		}
 		/**
 		 * @return the parsedResourceName
 		 */
@@ -95,6 +111,17 @@ public interface IBuildCommandParserEx extends ICBuildOutputParser, ILanguageSet
 		 * @return the cmdLine
 		 */
 		public String getCmdLine() {
+			if(cmdLine == null && cmdArgs != null) {
+				// not cached in cmdLine, the pooled arguments are what is shared between configurations
+				StringBuilder sb = new StringBuilder();
+				for(int i = 0; i < cmdArgs.length; i++) {
+					if(i > 0) {
+						sb.append(' ');
+					}
+					sb.append(cmdArgs[i]);
+				}
+				return sb.toString();
+			}
 			return cmdLine;
 		}
 
@@ -103,6 +130,17 @@ public interface IBuildCommandParserEx extends ICBuildOutputParser, ILanguageSet
 		 */
 		public void setCmdLine(String cmdLine) {
 			this.cmdLine = cmdLine;
+			this.cmdArgs = null;
+		}
+
+		/**
+		 * @return the command line split into arguments
+		 */
+		public String[] getCmdArgs() {
+			if(cmdArgs == null && cmdLine != null) {
+				return cmdLine.split(" ", -1); //$NON-NLS-1$
+			}
+			return cmdArgs;
 		}
 
 		/**
@@ -118,8 +156,32 @@ public interface IBuildCommandParserEx extends ICBuildOutputParser, ILanguageSet
 		public void setCuFileName(String cuFileName) {
 			this.cuFileName = cuFileName;
 		}
+
+		/**
+		 * @return the compiler, <code>null</code> if not detected
+		 */
+		public CompilerInfo getCompiler() {
+			return compiler;
+		}
+
+		/**
+		 * @param compiler the compiler to set
+		 */
+		public void setCompiler(CompilerInfo compiler) {
+			this.compiler = compiler;
+		}
 	}
 	
 	public CompileUnitInfo getCompileUnitInfo();
+
+	/**
+	 * @param store receives the entries of every resource the parser sets entries for, <code>null</code> for none
+	 */
+	public void setEntryStore(LangSetEntryStore store);
+
+	/**
+	 * Sets the entries of a resource as if parsed from its command line, also in the entry store.
+	 */
+	public void setSettingEntries(ICConfigurationDescription cfgDescription, IResource rc, String languageId, List<? extends ICLanguageSettingEntry> entries);
 	
 }
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.langset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.util.CDataUtil;
+import org.eclipse.core.resources.IResource;
+
+/**
+ * Compact on-disk store for language settings entries, keyed by resource and language. 
+ * Used for the entries computed from one compile_commands.json, where the resource key is 
+ * the project relative path ({@link #getResourceKey(IResource)}), and for the builtin compiler specs 
+ * cache, where it identifies a compiler.
+ *
+ * The file is an append-only log of records. Strings (resource paths, language ids, entry names
+ * and values) and entry lists are written once and referenced by id afterwards, so the many
+ * resources that share the same include paths and macros cost only a few bytes each.
+ * A resource record is only appended if the entries of that resource have changed.
+ * When the log holds more outdated than current resource records, it is rewritten.
+ */
+public class LangSetEntryStore {
+
+	private static final int MAGIC = 0x434D4C53; // "CMLS"
+	private static final int VERSION = 1;
+
+	private static final byte REC_STRING = 1;
+	private static final byte REC_LIST = 2;
+	private static final byte REC_RESOURCE = 3;
+
+	private static final int NO_LIST = -1;
+
+	private final File file;
+
+	private List<String> strings = new ArrayList<String>();
+	private Map<String, Integer> stringIds = new HashMap<String, Integer>();
+	private List<List<ICLanguageSettingEntry>> lists = new ArrayList<List<ICLanguageSettingEntry>>();
+	private Map<List<ICLanguageSettingEntry>, Integer> listIds = new HashMap<List<ICLanguageSettingEntry>, Integer>();
+	// key: resource path + '\n' + language id
+	private Map<String, Integer> resourceLists = new HashMap<String, Integer>();
+
+	private int outdatedRecords = 0;
+	private DataOutputStream out = null;
+
+	// keys put since beginUpdate(), null if no update is running
+	private Set<String> updatedKeys = null;
+	// true after the first complete update in this session
+	private boolean updated = false;
+
+	public LangSetEntryStore(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the key used for <code>rc</code> in this store
+	 */
+	public static String getResourceKey(IResource rc) {
+		return rc == null ? "" : rc.getProjectRelativePath().toPortableString(); //$NON-NLS-1$
+	}
+
+	private static String genKey(String rcKey, String languageId) {
+		return rcKey + '\n' + (languageId == null ? "" : languageId); //$NON-NLS-1$
+	}
+
+	/**
+	 * Reads the store from disk. A missing, outdated or damaged file results in an empty store.
+	 */
+	public synchronized void load() {
+		clear();
+		if(!file.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unknown format of " + file); //$NON-NLS-1$
+			}
+			while(true) {
+				byte recType;
+				try {
+					recType = in.readByte();
+				} catch(EOFException eof) {
+					break;
+				}
+				switch(recType) {
+				case REC_STRING:
+					addString(in.readUTF());
+					break;
+				case REC_LIST: {
+					int size = in.readInt();
+					List<ICLanguageSettingEntry> entries = new ArrayList<ICLanguageSettingEntry>(size);
+					for(int i = 0; i < size; i++) {
+						int kind = in.readInt();
+						int flags = in.readInt();
+						String name = strings.get(in.readInt());
+						String value = strings.get(in.readInt());
+						entries.add((ICLanguageSettingEntry)CDataUtil.createEntry(kind, name, value, null, flags));
+					}
+					addList(Collections.unmodifiableList(entries));
+					break;
+				}
+				case REC_RESOURCE: {
+					String key = strings.get(in.readInt());
+					int listId = in.readInt();
+					if(resourceLists.containsKey(key)) {
+						outdatedRecords++;
+					}
+					if(listId == NO_LIST) {
+						resourceLists.remove(key);
+					}
+					else {
+						resourceLists.put(key, listId);
+					}
+					break;
+				}
+				default:
+					throw new IOException("Unknown record type " + recType + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+		catch(IOException e) {
+			// this includes a partially written last record. The store starts over empty, 
+			// which makes the next request parse compile_commands.json again
+			Activator.log(e);
+			reset();
+		}
+		catch(RuntimeException e) {
+			Activator.log(e);
+			reset();
+		}
+		finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	public synchronized boolean isEmpty() {
+		return resourceLists.isEmpty();
+	}
+
+	/**
+	 * @return true, if {@link #endUpdate()} was called since this store was created
+	 */
+	public synchronized boolean isUpdated() {
+		return updated;
+	}
+
+	public synchronized List<ICLanguageSettingEntry> get(String rcKey, String languageId) {
+		Integer listId = resourceLists.get(genKey(rcKey, languageId));
+		return listId == null ? null : lists.get(listId);
+	}
+
+	/**
+	 * Starts a complete update of the store, e.g. a new pass over compile_commands.json.
+	 * Resources not put until {@link #endUpdate()} are removed then.
+	 */
+	public synchronized void beginUpdate() {
+		updatedKeys = new HashSet<String>();
+	}
+
+	public synchronized void endUpdate() {
+		if(updatedKeys == null) {
+			return;
+		}
+		Set<String> removedKeys = new HashSet<String>(resourceLists.keySet());
+		removedKeys.removeAll(updatedKeys);
+		updatedKeys = null;
+		updated = true;
+		for(String key: removedKeys) {
+			int sep = key.indexOf('\n');
+			String languageId = key.substring(sep + 1);
+			put(key.substring(0, sep), languageId.isEmpty() ? null : languageId, null);
+		}
+		close();
+	}
+
+	/**
+	 * Records the entries of a resource. Nothing is written if they are unchanged.
+	 *
+	 * @param entries the new entries, <code>null</code> removes the resource
+	 */
+	public synchronized void put(String rcKey, String languageId, List<? extends ICLanguageSettingEntry> entries) {
+		String key = genKey(rcKey, languageId);
+		Integer oldListId = resourceLists.get(key);
+		if(updatedKeys != null) {
+			updatedKeys.add(key);
+		}
+		try {
+			int listId = NO_LIST;
+			if(entries != null) {
+				List<ICLanguageSettingEntry> list = Collections.unmodifiableList(new ArrayList<ICLanguageSettingEntry>(entries));
+				Integer id = listIds.get(list);
+				if(id == null) {
+					id = writeList(list);
+				}
+				listId = id;
+			}
+			if(oldListId == null ? listId == NO_LIST : oldListId == listId) {
+				return;
+			}
+			int keyId = writeString(key);
+			DataOutputStream os = getOut();
+			os.writeByte(REC_RESOURCE);
+			os.writeInt(keyId);
+			os.writeInt(listId);
+			if(oldListId != null) {
+				outdatedRecords++;
+			}
+			if(listId == NO_LIST) {
+				resourceLists.remove(key);
+			}
+			else {
+				resourceLists.put(key, listId);
+			}
+		}
+		catch(IOException e) {
+			Activator.log(e);
+			reset();
+		}
+	}
+
+	/**
+	 * Writes pending records to disk, rewriting the file if it holds mostly outdated records.
+	 */
+	public synchronized void flush() {
+		try {
+			if(outdatedRecords > resourceLists.size()) {
+				compact();
+			}
+			if(out != null) {
+				out.flush();
+			}
+		}
+		catch(IOException e) {
+			Activator.log(e);
+			reset();
+		}
+	}
+
+	public synchronized void close() {
+		flush();
+		closeOut();
+	}
+
+	private void compact() throws IOException {
+		closeOut();
+		Map<String, Integer> current = new HashMap<String, Integer>(resourceLists);
+		List<List<ICLanguageSettingEntry>> currentLists = new ArrayList<List<ICLanguageSettingEntry>>(lists);
+		clear();
+		file.delete();
+		for(Map.Entry<String, Integer> entry: current.entrySet()) {
+			int sep = entry.getKey().indexOf('\n');
+			String rcKey = entry.getKey().substring(0, sep);
+			String languageId = entry.getKey().substring(sep + 1);
+			put(rcKey, languageId.isEmpty() ? null : languageId, currentLists.get(entry.getValue()));
+		}
+	}
+
+	private int writeString(String str) throws IOException {
+		Integer id = stringIds.get(str);
+		if(id == null) {
+			DataOutputStream os = getOut();
+			os.writeByte(REC_STRING);
+			os.writeUTF(str);
+			id = addString(str);
+		}
+		return id;
+	}
+
+	private int writeList(List<ICLanguageSettingEntry> list) throws IOException {
+		int[] nameIds = new int[list.size()];
+		int[] valueIds = new int[list.size()];
+		for(int i = 0; i < list.size(); i++) {
+			ICLanguageSettingEntry entry = list.get(i);
+			nameIds[i] = writeString(entry.getName() == null ? "" : entry.getName()); //$NON-NLS-1$
+			valueIds[i] = writeString(entry.getValue() == null ? "" : entry.getValue()); //$NON-NLS-1$
+		}
+		DataOutputStream os = getOut();
+		os.writeByte(REC_LIST);
+		os.writeInt(list.size());
+		for(int i = 0; i < list.size(); i++) {
+			os.writeInt(list.get(i).getKind());
+			os.writeInt(list.get(i).getFlags());
+			os.writeInt(nameIds[i]);
+			os.writeInt(valueIds[i]);
+		}
+		return addList(list);
+	}
+
+	private int addString(String str) {
+		int id = strings.size();
+		strings.add(str);
+		stringIds.put(str, id);
+		return id;
+	}
+
+	private int addList(List<ICLanguageSettingEntry> list) {
+		int id = lists.size();
+		lists.add(list);
+		listIds.put(list, id);
+		return id;
+	}
+
+	private DataOutputStream getOut() throws IOException {
+		if(out == null) {
+			boolean isNew = !file.exists();
+			file.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			if(isNew) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+			}
+		}
+		return out;
+	}
+
+	private void closeOut() {
+		if(out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				Activator.log(e);
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * Drops the store in memory and on disk, after the file could not be read or written completely.
+	 */
+	private void reset() {
+		closeOut();
+		clear();
+		file.delete();
+	}
+
+	private void clear() {
+		strings.clear();
+		stringIds.clear();
+		lists.clear();
+		listIds.clear();
+		resourceLists.clear();
+		outdatedRecords = 0;
+	}
+}
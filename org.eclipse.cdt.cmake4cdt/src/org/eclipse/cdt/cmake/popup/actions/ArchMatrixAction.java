@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake.popup.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.ArchMatrixBuild;
+import org.eclipse.cdt.cmake.var.ArchToolchainPair;
+import org.eclipse.cdt.cmake.var.ArchToolchainPairList;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.dialogs.ListSelectionDialog;
+
+/**
+ * Asks for the architectures to build the active configuration for, and starts an {@link ArchMatrixBuild}.
+ */
+public class ArchMatrixAction implements IObjectActionDelegate {
+
+	private Shell shell;
+	private IProject project;
+
+	/**
+	 * @see IObjectActionDelegate#setActivePart(IAction, IWorkbenchPart)
+	 */
+	public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+		shell = targetPart.getSite().getShell();
+	}
+
+	/**
+	 * @see IActionDelegate#run(IAction)
+	 */
+	public void run(IAction action) {
+		if(project == null || shell == null) {
+			return;
+		}
+		ArchToolchainPairList archs = new ArchToolchainPairList();
+		archs.doLoad();
+		ListSelectionDialog dialog = new ListSelectionDialog(shell, archs, new ArrayContentProvider(), new LabelProvider() {
+			@Override
+			public String getText(Object element) {
+				ArchToolchainPair arch = (ArchToolchainPair)element;
+				return arch.getArchName() + " (" + arch.getToolchainFile() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}, "Architectures to build '" + project.getName() + "' for:"); //$NON-NLS-1$ //$NON-NLS-2$
+		dialog.setTitle("Build for Architectures"); //$NON-NLS-1$
+		dialog.setInitialElementSelections(archs);
+		if(dialog.open() != Window.OK) {
+			return;
+		}
+		List<ArchToolchainPair> selected = new ArrayList<ArchToolchainPair>();
+		for(Object obj: dialog.getResult()) {
+			selected.add((ArchToolchainPair)obj);
+		}
+		ArchMatrixBuild.schedule(project, selected);
+	}
+
+	/**
+	 * @see IActionDelegate#selectionChanged(IAction, ISelection)
+	 */
+	public void selectionChanged(IAction action, ISelection selection) {
+		project = null;
+		if (selection instanceof IStructuredSelection) {
+			Object obj = ((IStructuredSelection)selection).getFirstElement();
+			if (obj instanceof IAdaptable) {
+				project = (IProject)((IAdaptable)obj).getAdapter(IProject.class);
+			}
+		}
+		action.setEnabled(project != null);
+	}
+}
@@ -12,25 +12,16 @@ package org.eclipse.cdt.cmake.popup.actions;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
-import org.eclipse.cdt.cmake.CMakeProjectBuilderImpl;
+import org.eclipse.cdt.cmake.CMakeRunJob;
 import org.eclipse.cdt.core.model.ICContainer;
 import org.eclipse.cdt.core.model.ICElement;
 import org.eclipse.cdt.core.model.ICProject;
-import org.eclipse.cdt.ui.CUIPlugin;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspace;
-import org.eclipse.core.resources.IWorkspaceRunnable;
-import org.eclipse.core.resources.IncrementalProjectBuilder;
-import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.ISchedulingRule;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -70,41 +61,13 @@ public class RunCMakeAction implements IObjectActionDelegate {
 	 * @see IActionDelegate#run(IAction)
 	 */
 	public void run(IAction action) {
-		
-		// We need to use a workspace root scheduling rule because adding MakeTargets
-		// may end up saving the project description which runs under a workspace root rule.
-		final ISchedulingRule rule = ResourcesPlugin.getWorkspace().getRoot();
-		
-		Job backgroundJob = new Job("CMake Action"){  //$NON-NLS-1$
-			/* (non-Javadoc)
-			 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
-			 */
-			protected IStatus run(IProgressMonitor monitor) {
-				try {
-					ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
-
-						public void run(IProgressMonitor monitor) throws CoreException {
-							for(int i=0; i < fContainer.size(); i++) {
-								IProject project = fContainer.get(i).getProject();
-								CUIPlugin.getDefault().startGlobalConsole();
-								try {
-									project.build(IncrementalProjectBuilder.INCREMENTAL_BUILD, CMakeProjectBuilderImpl.BUILDER_ID, null, null);
-								} catch (CoreException e) {
-									// Try to inform user that CMake failed: Attention wrong thread for Dialogs here!
-								}
-							}
-						}
-					}, rule, IWorkspace.AVOID_UPDATE, monitor);
-				} catch (CoreException e) {
-					return e.getStatus();
-				}
-				IStatus returnStatus = Status.OK_STATUS;
-				return returnStatus;
-			}
-		};
-
-		backgroundJob.setRule(rule);
-		backgroundJob.schedule();
+		// one job per project, running in parallel up to the limit set in the preferences.
+		// Explicitly requested, so cmake is run even if nothing has changed.
+		Set<IProject> projects = new LinkedHashSet<IProject>();
+		for(int i=0; i < fContainer.size(); i++) {
+			projects.add(fContainer.get(i).getProject());
+		}
+		CMakeRunJob.schedule(projects, true);
 	}
 
 	/**
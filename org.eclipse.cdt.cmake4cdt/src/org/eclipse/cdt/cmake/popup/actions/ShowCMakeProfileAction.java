@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake.popup.actions;
+
+import org.eclipse.cdt.cmake.trace.CMakeProfile;
+import org.eclipse.cdt.cmake.ui.CMakeProfileView;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PartInitException;
+
+/**
+ * Opens the profile of the last cmake run of the active configuration in the {@link CMakeProfileView}.
+ */
+public class ShowCMakeProfileAction extends ShowCMakeTraceAction {
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.cmake.popup.actions.ShowCMakeTraceAction#show(org.eclipse.ui.IWorkbenchPage, org.eclipse.core.runtime.IPath)
+	 */
+	@Override
+	protected void show(IWorkbenchPage page, IPath buildDir) throws PartInitException {
+		CMakeProfileView view = (CMakeProfileView)page.showView(CMakeProfileView.ID);
+		view.setProfileFile(CMakeProfile.getProfileFile(buildDir));
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake.popup.actions;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.cmake.CMakeOutputPath;
+import org.eclipse.cdt.cmake.trace.CMakeTrace;
+import org.eclipse.cdt.cmake.ui.CMakeTraceView;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.PartInitException;
+
+/**
+ * Opens the trace of the last cmake run of the active configuration in the {@link CMakeTraceView}.
+ */
+public class ShowCMakeTraceAction implements IObjectActionDelegate {
+
+	private IWorkbenchPart part;
+	private IProject project;
+
+	/**
+	 * @see IObjectActionDelegate#setActivePart(IAction, IWorkbenchPart)
+	 */
+	public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+		part = targetPart;
+	}
+
+	/**
+	 * @see IActionDelegate#run(IAction)
+	 */
+	public void run(IAction action) {
+		if(project == null || part == null) {
+			return;
+		}
+		ICProjectDescription projDesc = CoreModel.getDefault().getProjectDescription(project, false);
+		if(projDesc == null || projDesc.getActiveConfiguration() == null) {
+			return;
+		}
+		String configName = projDesc.getActiveConfiguration().getName();
+		try {
+			show(part.getSite().getPage(), CMakeOutputPath.getPath(project, configName));
+		} catch (PartInitException e) {
+			Activator.log(e);
+		}
+	}
+
+	/**
+	 * Shows the output of the last cmake run in <code>buildDir</code>.
+	 */
+	protected void show(IWorkbenchPage page, IPath buildDir) throws PartInitException {
+		CMakeTraceView view = (CMakeTraceView)page.showView(CMakeTraceView.ID);
+		view.setTraceFile(CMakeTrace.getTraceFile(buildDir));
+	}
+
+	/**
+	 * @see IActionDelegate#selectionChanged(IAction, ISelection)
+	 */
+	public void selectionChanged(IAction action, ISelection selection) {
+		project = null;
+		if (selection instanceof IStructuredSelection) {
+			Object obj = ((IStructuredSelection)selection).getFirstElement();
+			if (obj instanceof IAdaptable) {
+				project = (IProject)((IAdaptable)obj).getAdapter(IProject.class);
+			}
+		}
+		action.setEnabled(project != null);
+	}
+}
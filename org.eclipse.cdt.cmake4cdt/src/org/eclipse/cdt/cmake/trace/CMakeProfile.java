@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.trace;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Where the time of a configure goes, from <code>cmake --profiling-format=google-trace</code> 
+ * (CMake 3.18 and later).
+ *
+ * The profile is a JSON array of begin ("B") and end ("E") events of every command cmake runs. 
+ * It is read element by element, and the time is summed up per CMake file, per command and per 
+ * call stack. Recursive calls are counted once in the total time, self time excludes the callees.
+ */
+public class CMakeProfile {
+
+	public static final String PROFILE_FILE = "CMakeFiles/org.eclipse.cdt.cmake.profile.json"; //$NON-NLS-1$
+	// the first version with --profiling-format and --profiling-output
+	public static final int MIN_MAJOR_VERSION = 3;
+	public static final int MIN_MINOR_VERSION = 18;
+
+	public enum Grouping {
+		FILE("CMake file"), //$NON-NLS-1$
+		COMMAND("Command"), //$NON-NLS-1$
+		CALL_STACK("Call stack"); //$NON-NLS-1$
+
+		private final String label;
+
+		private Grouping(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/**
+	 * The summed up time of one file, command or call stack.
+	 */
+	public static class Hotspot {
+		private final String key;
+		private int calls = 0;
+		private long totalMicros = 0;
+		private long selfMicros = 0;
+
+		Hotspot(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return the file, the command, or the call stack with " > " between the calls
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		public int getCalls() {
+			return calls;
+		}
+
+		/**
+		 * @return microseconds, including callees
+		 */
+		public long getTotalMicros() {
+			return totalMicros;
+		}
+
+		/**
+		 * @return microseconds, excluding callees
+		 */
+		public long getSelfMicros() {
+			return selfMicros;
+		}
+	}
+
+	/**
+	 * A command that has begun but not yet ended.
+	 */
+	private static class Frame {
+		final String[] keys;
+		final long begin;
+		long childMicros = 0;
+
+		Frame(String[] keys, long begin) {
+			this.keys = keys;
+			this.begin = begin;
+		}
+	}
+
+	private final File file;
+	private final List<Map<String, Hotspot>> hotspots = new ArrayList<Map<String, Hotspot>>();
+	// per grouping: key -> number of frames with this key on the stack
+	private final List<Map<String, int[]>> active = new ArrayList<Map<String, int[]>>();
+	private long totalMicros = 0;
+
+	public CMakeProfile(File file) {
+		this.file = file;
+		for(int i = 0; i < Grouping.values().length; i++) {
+			hotspots.add(new HashMap<String, Hotspot>());
+			active.add(new HashMap<String, int[]>());
+		}
+	}
+
+	/**
+	 * @return the file cmake writes the profile of a configure in <code>buildDir</code> to
+	 */
+	public static File getProfileFile(IPath buildDir) {
+		return buildDir.append(PROFILE_FILE).toFile();
+	}
+
+	/**
+	 * @return the arguments that make cmake write its profile to {@link #getProfileFile(IPath)}
+	 */
+	public static List<String> getArguments(IPath buildDir) {
+		return Arrays.asList("--profiling-format=google-trace", //$NON-NLS-1$
+				"--profiling-output=" + getProfileFile(buildDir).getAbsolutePath()); //$NON-NLS-1$
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reads the profile. A missing end of the array, e.g. from a canceled run, ends the profile 
+	 * early without an error.
+	 */
+	public void read(IProgressMonitor monitor) throws IOException {
+		monitor.beginTask("Reading " + file.getName(), IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")); //$NON-NLS-1$
+		try {
+			JSONTokener tokener = new JSONTokener(reader);
+			if(tokener.nextClean() != '[') {
+				throw new IOException("Not a google-trace profile: " + file); //$NON-NLS-1$
+			}
+			LinkedList<Frame> stack = new LinkedList<Frame>();
+			int events = 0;
+			while(true) {
+				char c = tokener.nextClean();
+				if(c == ']' || c == 0) {
+					break;
+				}
+				if(c != ',') {
+					tokener.back();
+				}
+				Object value = tokener.nextValue();
+				if(value instanceof JSONObject) {
+					addEvent((JSONObject)value, stack);
+				}
+				if(++events % 10000 == 0 && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			}
+		} catch (JSONException e) {
+			// the profile of a run that did not finish
+		}
+		finally {
+			reader.close();
+			monitor.done();
+		}
+	}
+
+	private void addEvent(JSONObject event, LinkedList<Frame> stack) {
+		String phase = event.optString("ph"); //$NON-NLS-1$
+		long ts = (long)event.optDouble("ts", 0); //$NON-NLS-1$
+		if("B".equals(phase)) { //$NON-NLS-1$
+			String command = event.optString("name"); //$NON-NLS-1$
+			JSONObject args = event.optJSONObject("args"); //$NON-NLS-1$
+			String location = args != null ? args.optString("location") : ""; //$NON-NLS-1$ //$NON-NLS-2$
+			String fileName = location;
+			int colon = location.lastIndexOf(':');
+			if(colon > 0) {
+				fileName = location.substring(0, colon);
+			}
+			String call = command + " (" + location + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+			String callStack = stack.isEmpty() ? call : stack.getLast().keys[Grouping.CALL_STACK.ordinal()] + " > " + call; //$NON-NLS-1$
+			String[] keys = new String[Grouping.values().length];
+			keys[Grouping.FILE.ordinal()] = fileName;
+			keys[Grouping.COMMAND.ordinal()] = command;
+			keys[Grouping.CALL_STACK.ordinal()] = callStack;
+			for(int i = 0; i < keys.length; i++) {
+				int[] count = active.get(i).get(keys[i]);
+				if(count == null) {
+					count = new int[1];
+					active.get(i).put(keys[i], count);
+				}
+				count[0]++;
+			}
+			stack.add(new Frame(keys, ts));
+		}
+		else if("E".equals(phase) && !stack.isEmpty()) { //$NON-NLS-1$
+			Frame frame = stack.removeLast();
+			long micros = Math.max(0, ts - frame.begin);
+			if(stack.isEmpty()) {
+				totalMicros += micros;
+			}
+			else {
+				stack.getLast().childMicros += micros;
+			}
+			for(int i = 0; i < frame.keys.length; i++) {
+				Hotspot hotspot = hotspots.get(i).get(frame.keys[i]);
+				if(hotspot == null) {
+					hotspot = new Hotspot(frame.keys[i]);
+					hotspots.get(i).put(frame.keys[i], hotspot);
+				}
+				hotspot.calls++;
+				hotspot.selfMicros += Math.max(0, micros - frame.childMicros);
+				int[] count = active.get(i).get(frame.keys[i]);
+				if(--count[0] == 0) {
+					// the outermost of nested calls with the same key
+					hotspot.totalMicros += micros;
+					active.get(i).remove(frame.keys[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return microseconds spent in top level commands, i.e. the whole configure
+	 */
+	public long getTotalMicros() {
+		return totalMicros;
+	}
+
+	/**
+	 * @return the hotspots, the highest total time first
+	 */
+	public List<Hotspot> getHotspots(Grouping grouping) {
+		List<Hotspot> result = new ArrayList<Hotspot>(hotspots.get(grouping.ordinal()).values());
+		Collections.sort(result, new Comparator<Hotspot>() {
+			@Override
+			public int compare(Hotspot h1, Hotspot h2) {
+				return Long.compare(h2.totalMicros, h1.totalMicros);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Writes the hotspots as CSV, e.g. for a spreadsheet.
+	 */
+	public void writeCsv(Grouping grouping, Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.println(grouping.getLabel() + ",Calls,Total ms,Self ms"); //$NON-NLS-1$
+		for(Hotspot hotspot: getHotspots(grouping)) {
+			out.print('"');
+			out.print(hotspot.getKey().replace("\"", "\"\"")); //$NON-NLS-1$ //$NON-NLS-2$
+			out.print("\","); //$NON-NLS-1$
+			out.print(hotspot.getCalls());
+			out.print(',');
+			out.print(hotspot.getTotalMicros() / 1000.0);
+			out.print(',');
+			out.println(hotspot.getSelfMicros() / 1000.0);
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+
+package org.eclipse.cdt.cmake.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The output of <code>cmake --trace-format=json-v1 --trace-redirect=...</code> (CMake 3.17 and later), 
+ * which is written to a file in the build directory instead of the console.
+ *
+ * The file may have millions of lines, so it is never loaded as a whole. {@link #index(IProgressMonitor)} 
+ * reads it once as a stream and keeps only the byte offset of every {@value #PAGE_SIZE}th record, 
+ * the traced files and how often each of their lines was run, and the pages holding the records 
+ * of each line. Records are read back a page at a time with {@link #readPage(int)}.
+ */
+public class CMakeTrace {
+
+	public static final String TRACE_FILE = "CMakeFiles/org.eclipse.cdt.cmake.trace.json"; //$NON-NLS-1$
+	public static final int PAGE_SIZE = 256;
+	// the first version with --trace-format and --trace-redirect
+	public static final int MIN_MAJOR_VERSION = 3;
+	public static final int MIN_MINOR_VERSION = 17;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+	private static final String FILE_KEY = "\"file\":\""; //$NON-NLS-1$
+	private static final String LINE_KEY = "\"line\":"; //$NON-NLS-1$
+
+	/**
+	 * One traced command.
+	 */
+	public static class Record {
+		private final String file;
+		private final int line;
+		private final String command;
+		private final String args;
+		private final int frame;
+
+		Record(String file, int line, String command, String args, int frame) {
+			this.file = file;
+			this.line = line;
+			this.command = command;
+			this.args = args;
+			this.frame = frame;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public String getCommand() {
+			return command;
+		}
+
+		/**
+		 * @return the arguments, separated by blanks
+		 */
+		public String getArgs() {
+			return args;
+		}
+
+		/**
+		 * @return the depth of the call stack, 1 for the top level of a CMakeLists.txt
+		 */
+		public int getFrame() {
+			return frame;
+		}
+	}
+
+	/**
+	 * The distinct pages holding the records of one line, in ascending order.
+	 */
+	private static class Pages {
+		private int[] pages = new int[1];
+		private int size = 0;
+
+		void add(int page) {
+			// records are added in order, so a page is either the last one or a new one
+			if(size > 0 && pages[size - 1] == page) {
+				return;
+			}
+			if(size == pages.length) {
+				pages = Arrays.copyOf(pages, size * 2);
+			}
+			pages[size++] = page;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(pages, size);
+		}
+	}
+
+	private final File file;
+
+	private int recordCount = 0;
+	private long[] pageOffsets = new long[16];
+	private final List<String> files = new ArrayList<String>();
+	private final Map<String, Integer> fileIds = new HashMap<String, Integer>();
+	private final List<int[]> fileRecordCounts = new ArrayList<int[]>();
+	// per file: number of its first record
+	private final List<Integer> fileFirstRecords = new ArrayList<Integer>();
+	// per file: line -> number of records
+	private final List<Map<Integer, Integer>> lineCounts = new ArrayList<Map<Integer, Integer>>();
+	// per file: line -> pages with its records
+	private final List<Map<Integer, Pages>> linePages = new ArrayList<Map<Integer, Pages>>();
+
+	public CMakeTrace(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the file cmake writes the trace of a configure in <code>buildDir</code> to
+	 */
+	public static File getTraceFile(IPath buildDir) {
+		return buildDir.append(TRACE_FILE).toFile();
+	}
+
+	/**
+	 * @return the arguments that make cmake write its trace to {@link #getTraceFile(IPath)}
+	 */
+	public static List<String> getArguments(IPath buildDir) {
+		return Arrays.asList("--trace", "--trace-format=json-v1", //$NON-NLS-1$ //$NON-NLS-2$
+				"--trace-redirect=" + getTraceFile(buildDir).getAbsolutePath()); //$NON-NLS-1$
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reads the trace once from start to end. Only the file and line of each record are 
+	 * looked at, by plain string search.
+	 */
+	public void index(IProgressMonitor monitor) throws IOException {
+		long length = file.length();
+		int totalWork = (int)Math.min(length / 1024 + 1, Integer.MAX_VALUE);
+		monitor.beginTask("Indexing " + file.getName(), totalWork); //$NON-NLS-1$
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream lineBuf = new ByteArrayOutputStream(1024);
+			byte[] buf = new byte[1 << 16];
+			long offset = 0;
+			long lineOffset = 0;
+			int n;
+			while((n = in.read(buf)) > 0) {
+				int lineStart = 0;
+				for(int i = 0; i < n; i++) {
+					if(buf[i] == '\n') {
+						lineBuf.write(buf, lineStart, i - lineStart);
+						addRecord(new String(lineBuf.toByteArray(), UTF8), lineOffset);
+						lineBuf.reset();
+						lineStart = i + 1;
+						lineOffset = offset + lineStart;
+					}
+				}
+				lineBuf.write(buf, lineStart, n - lineStart);
+				offset += n;
+				if(monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				monitor.worked(n / 1024);
+			}
+			if(lineBuf.size() > 0) {
+				addRecord(new String(lineBuf.toByteArray(), UTF8), lineOffset);
+			}
+		}
+		finally {
+			in.close();
+			monitor.done();
+		}
+	}
+
+	private void addRecord(String line, long offset) {
+		String path = getStringValue(line, FILE_KEY);
+		if(path == null) {
+			// the version header
+			return;
+		}
+		int page = recordCount / PAGE_SIZE;
+		if(recordCount % PAGE_SIZE == 0) {
+			if(page == pageOffsets.length) {
+				pageOffsets = Arrays.copyOf(pageOffsets, page * 2);
+			}
+			pageOffsets[page] = offset;
+		}
+
+		Integer fileId = fileIds.get(path);
+		if(fileId == null) {
+			fileId = files.size();
+			files.add(path);
+			fileIds.put(path, fileId);
+			fileRecordCounts.add(new int[1]);
+			fileFirstRecords.add(recordCount);
+			lineCounts.add(new HashMap<Integer, Integer>());
+			linePages.add(new HashMap<Integer, Pages>());
+		}
+		recordCount++;
+		fileRecordCounts.get(fileId)[0]++;
+		int lineNo = getIntValue(line, LINE_KEY);
+		Map<Integer, Integer> counts = lineCounts.get(fileId);
+		Integer count = counts.get(lineNo);
+		counts.put(lineNo, count == null ? 1 : count + 1);
+		Pages pages = linePages.get(fileId).get(lineNo);
+		if(pages == null) {
+			pages = new Pages();
+			linePages.get(fileId).put(lineNo, pages);
+		}
+		pages.add(page);
+	}
+
+	private static String getStringValue(String line, String key) {
+		int start = line.indexOf(key);
+		if(start < 0) {
+			return null;
+		}
+		start += key.length();
+		StringBuilder value = new StringBuilder();
+		for(int i = start; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(c == '"') {
+				return value.toString();
+			}
+			if(c == '\\' && i + 1 < line.length()) {
+				// paths only escape backslashes and quotes
+				c = line.charAt(++i);
+			}
+			value.append(c);
+		}
+		return null;
+	}
+
+	private static int getIntValue(String line, String key) {
+		int start = line.indexOf(key);
+		if(start < 0) {
+			return -1;
+		}
+		int value = 0;
+		for(int i = start + key.length(); i < line.length() && Character.isDigit(line.charAt(i)); i++) {
+			value = value * 10 + (line.charAt(i) - '0');
+		}
+		return value;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	public int getPageCount() {
+		return (recordCount + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+
+	/**
+	 * @return the traced files, in the order they were first entered
+	 */
+	public List<String> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * @return the number of records in <code>path</code>
+	 */
+	public int getRecordCount(String path) {
+		Integer fileId = fileIds.get(path);
+		return fileId == null ? 0 : fileRecordCounts.get(fileId)[0];
+	}
+
+	/**
+	 * @return the number of the first record in <code>path</code>, counted from 0, -1 if there is none
+	 */
+	public int getFirstRecord(String path) {
+		Integer fileId = fileIds.get(path);
+		return fileId == null ? -1 : fileFirstRecords.get(fileId);
+	}
+
+	/**
+	 * @return the pages holding the records of a line of <code>path</code>, in ascending order
+	 */
+	public int[] getPages(String path, int line) {
+		Integer fileId = fileIds.get(path);
+		Pages pages = fileId == null ? null : linePages.get(fileId).get(line);
+		return pages == null ? new int[0] : pages.toArray();
+	}
+
+	/**
+	 * @return line number -> how often the line was run
+	 */
+	public Map<Integer, Integer> getLineCounts(String path) {
+		Integer fileId = fileIds.get(path);
+		return fileId == null ? Collections.<Integer, Integer>emptyMap() : Collections.unmodifiableMap(lineCounts.get(fileId));
+	}
+
+	/**
+	 * Reads the records of one page from the trace file.
+	 */
+	public List<Record> readPage(int page) throws IOException {
+		List<Record> records = new ArrayList<Record>(PAGE_SIZE);
+		if(page < 0 || page >= getPageCount()) {
+			return records;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			raf.seek(pageOffsets[page]);
+			ByteArrayOutputStream lineBuf = new ByteArrayOutputStream(1024);
+			byte[] buf = new byte[1 << 16];
+			int n;
+			while(records.size() < PAGE_SIZE && (n = raf.read(buf)) > 0) {
+				int lineStart = 0;
+				for(int i = 0; i < n && records.size() < PAGE_SIZE; i++) {
+					if(buf[i] == '\n') {
+						lineBuf.write(buf, lineStart, i - lineStart);
+						addParsedRecord(records, new String(lineBuf.toByteArray(), UTF8));
+						lineBuf.reset();
+						lineStart = i + 1;
+					}
+				}
+				if(records.size() < PAGE_SIZE) {
+					lineBuf.write(buf, lineStart, n - lineStart);
+				}
+			}
+			if(records.size() < PAGE_SIZE && lineBuf.size() > 0) {
+				addParsedRecord(records, new String(lineBuf.toByteArray(), UTF8));
+			}
+		}
+		finally {
+			raf.close();
+		}
+		return records;
+	}
+
+	private static void addParsedRecord(List<Record> records, String line) {
+		try {
+			JSONObject json = new JSONObject(line);
+			if(!json.has("file")) { //$NON-NLS-1$
+				return;
+			}
+			StringBuilder args = new StringBuilder();
+			JSONArray jsonArgs = json.optJSONArray("args"); //$NON-NLS-1$
+			if(jsonArgs != null) {
+				for(int i = 0; i < jsonArgs.length(); i++) {
+					if(i > 0) {
+						args.append(' ');
+					}
+					args.append(jsonArgs.optString(i));
+				}
+			}
+			records.add(new Record(json.getString("file"), json.optInt("line", -1), json.optString("cmd"), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					args.toString(), json.optInt("frame", 0))); //$NON-NLS-1$
+		} catch (JSONException e) {
+			// a partially written last line
+		}
+	}
+}
@@ -26,6 +26,7 @@ import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.ListEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Label;
@@ -113,6 +114,17 @@ public class CMakePreferencePage extends FieldEditorPreferencePage implements
 
 		addField( new DestdirFieldEditor( PreferenceConstants.P_BUILDDIR, "&Build in dir:", getFieldEditorParent()));
 		addField( new DestdirFieldEditor( PreferenceConstants.P_DESTDIR, "&DESTDIR:", getFieldEditorParent()));
+
+		IntegerFieldEditor cacheLimitEditor = new IntegerFieldEditor( PreferenceConstants.P_COMPILE_CMDS_CACHE_LIMIT, "Max. cached compile units of inactive configurations (0 = unlimited):", getFieldEditorParent());
+		cacheLimitEditor.setValidRange(0, Integer.MAX_VALUE);
+		addField( cacheLimitEditor );
+		addField( new BooleanFieldEditor( PreferenceConstants.P_LANGSET_PERSIST, "Persist language settings computed from compile_commands.json", getFieldEditorParent()));
+		addField( new BooleanFieldEditor( PreferenceConstants.P_STAGED_CONFIGURE, "Keep language settings of the last successful CMake run until the next one succeeds", getFieldEditorParent()));
+		addField( new BooleanFieldEditor( PreferenceConstants.P_INITIAL_CACHE, "Start new build directories with the check results of earlier CMake runs", getFieldEditorParent()));
+
+		IntegerFieldEditor maxParallelRunsEditor = new IntegerFieldEditor( PreferenceConstants.P_CMAKE_MAX_PARALLEL_RUNS, "Max. projects or architectures configured in parallel:", getFieldEditorParent());
+		maxParallelRunsEditor.setValidRange(1, 1024);
+		addField( maxParallelRunsEditor );
 	}
 
 	protected void initialize() {
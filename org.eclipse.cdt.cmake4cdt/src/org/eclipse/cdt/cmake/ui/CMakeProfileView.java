@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake.ui;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.cmake.trace.CMakeProfile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows the hotspots of a profile written by cmake --profiling-format=google-trace, 
+ * ranked by total time and grouped by CMake file, command or call stack.
+ */
+public class CMakeProfileView extends ViewPart {
+
+	public static final String ID = "org.eclipse.cdt.cmake.ui.CMakeProfileView"; //$NON-NLS-1$
+
+	// the table is not virtual, the long tail of tiny hotspots is left out
+	private static final int MAX_ROWS = 2000;
+
+	private Label statusLabel;
+	private Combo groupingCombo;
+	private Button exportBtn;
+	private Table hotspotsTable;
+
+	private CMakeProfile profile = null;
+	private Job readJob = null;
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	@Override
+	public void createPartControl(Composite parent) {
+		parent.setLayout(new GridLayout(4, false));
+		statusLabel = new Label(parent, SWT.NONE);
+		statusLabel.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		statusLabel.setText("Use 'show CMake profile' on a CMake project configured with profiling.");
+
+		Label groupingLabel = new Label(parent, SWT.NONE);
+		groupingLabel.setText("Group by:");
+		groupingCombo = new Combo(parent, SWT.READ_ONLY);
+		for(CMakeProfile.Grouping grouping: CMakeProfile.Grouping.values()) {
+			groupingCombo.add(grouping.getLabel());
+		}
+		groupingCombo.select(0);
+		groupingCombo.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				fillTable();
+			}
+		});
+
+		exportBtn = new Button(parent, SWT.PUSH);
+		exportBtn.setText("Export...");
+		exportBtn.setEnabled(false);
+		exportBtn.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				exportPressed();
+			}
+		});
+
+		hotspotsTable = new Table(parent, SWT.BORDER | SWT.FULL_SELECTION);
+		GridData gd = new GridData(GridData.FILL_BOTH);
+		gd.horizontalSpan = 4;
+		hotspotsTable.setLayoutData(gd);
+		hotspotsTable.setHeaderVisible(true);
+		addColumn(SWT.LEFT, "", 500); //$NON-NLS-1$
+		addColumn(SWT.RIGHT, "Calls", 70);
+		addColumn(SWT.RIGHT, "Total ms", 90);
+		addColumn(SWT.RIGHT, "Self ms", 90);
+		addColumn(SWT.RIGHT, "% of configure", 100);
+	}
+
+	private void addColumn(int style, String text, int width) {
+		TableColumn column = new TableColumn(hotspotsTable, style);
+		column.setText(text);
+		column.setWidth(width);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+	 */
+	@Override
+	public void setFocus() {
+		hotspotsTable.setFocus();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#dispose()
+	 */
+	@Override
+	public void dispose() {
+		if(readJob != null) {
+			readJob.cancel();
+		}
+		super.dispose();
+	}
+
+	/**
+	 * Reads <code>profileFile</code> in the background and shows it when done.
+	 */
+	public void setProfileFile(File profileFile) {
+		if(readJob != null) {
+			readJob.cancel();
+		}
+		profile = null;
+		hotspotsTable.removeAll();
+		exportBtn.setEnabled(false);
+		if(!profileFile.isFile()) {
+			statusLabel.setText("No profile found at " + profileFile + ". Turn on profiling in the CMake settings of the project and run CMake.");
+			return;
+		}
+		statusLabel.setText("Reading " + profileFile + " ...");
+
+		final CMakeProfile newProfile = new CMakeProfile(profileFile);
+		readJob = new Job("Reading CMake profile") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					newProfile.read(monitor);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				} catch (IOException e) {
+					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Could not read " + newProfile.getFile(), e);
+				}
+				if(!statusLabel.isDisposed()) {
+					statusLabel.getDisplay().asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if(!statusLabel.isDisposed()) {
+								profile = newProfile;
+								statusLabel.setText(profile.getFile() + ": configure took " + profile.getTotalMicros() / 1000 + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+								exportBtn.setEnabled(true);
+								fillTable();
+							}
+						}
+					});
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		readJob.schedule();
+	}
+
+	private CMakeProfile.Grouping getGrouping() {
+		return CMakeProfile.Grouping.values()[Math.max(0, groupingCombo.getSelectionIndex())];
+	}
+
+	private void fillTable() {
+		hotspotsTable.removeAll();
+		if(profile == null) {
+			return;
+		}
+		CMakeProfile.Grouping grouping = getGrouping();
+		hotspotsTable.getColumn(0).setText(grouping.getLabel());
+		double total = Math.max(1, profile.getTotalMicros());
+		List<CMakeProfile.Hotspot> hotspots = profile.getHotspots(grouping);
+		hotspotsTable.setRedraw(false);
+		for(int i = 0; i < hotspots.size() && i < MAX_ROWS; i++) {
+			CMakeProfile.Hotspot hotspot = hotspots.get(i);
+			TableItem item = new TableItem(hotspotsTable, SWT.NONE);
+			item.setText(new String[] { hotspot.getKey(), Integer.toString(hotspot.getCalls()), 
+					String.format("%.1f", hotspot.getTotalMicros() / 1000.0), //$NON-NLS-1$
+					String.format("%.1f", hotspot.getSelfMicros() / 1000.0), //$NON-NLS-1$
+					String.format("%.1f", 100 * hotspot.getTotalMicros() / total) }); //$NON-NLS-1$
+		}
+		hotspotsTable.setRedraw(true);
+	}
+
+	private void exportPressed() {
+		FileDialog dialog = new FileDialog(hotspotsTable.getShell(), SWT.SAVE);
+		dialog.setFilterExtensions(new String[] { "*.csv" }); //$NON-NLS-1$
+		dialog.setFileName("cmake-hotspots.csv"); //$NON-NLS-1$
+		dialog.setOverwrite(true);
+		String result = dialog.open();
+		if(result == null || profile == null) {
+			return;
+		}
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(result), "UTF-8"); //$NON-NLS-1$
+			try {
+				profile.writeCsv(getGrouping(), writer);
+			}
+			finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			Activator.log(e);
+			MessageDialog.openError(hotspotsTable.getShell(), "Export CMake hotspots", "Could not write " + result + ": " + e.getMessage());
+		}
+	}
+}
@@ -18,5 +18,7 @@ public class CMakePropertyConstants {
 	public static final String P_BUILD_PATH = "BuildPath";
 	public static final String P_BUILD_PATH_BASE = "Build Path";
 	public static final String P_BUILD_PATH_BTN= "Browse";
+	// parallel jobs of the builder, 0 for automatic
+	public static final String P_PARALLEL_JOBS = "parallelJobs";
 
 }
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (c) 2014, 2015 Rohde & Schwarz GmbH & Co. KG and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Martin Runge - initial implementation of cmake support
+ *******************************************************************************/
+package org.eclipse.cdt.cmake.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.cmake.trace.CMakeTrace;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeColumn;
+import org.eclipse.swt.widgets.TreeItem;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Shows a trace written by cmake --trace-format=json-v1. 
+ *
+ * The left side is a virtual tree of the traced files with the lines run in them and how often. 
+ * Selecting a file or line shows its first record on the right side, opening a line again shows its next run. 
+ * The right side is a virtual table of all records, which reads a page of the trace file only when 
+ * it is scrolled into view.
+ */
+public class CMakeTraceView extends ViewPart {
+
+	public static final String ID = "org.eclipse.cdt.cmake.ui.CMakeTraceView"; //$NON-NLS-1$
+
+	private static final int CACHED_PAGES = 16;
+
+	private Label statusLabel;
+	private Tree filesTree;
+	private Table recordsTable;
+
+	private CMakeTrace trace = null;
+	private Job indexJob = null;
+	// the files of the tree, the busiest first, and the sorted lines of the ones expanded so far
+	private List<String> treeFiles = Collections.emptyList();
+	private final Map<String, List<Integer>> treeLines = new HashMap<String, List<Integer>>();
+
+	// least recently used pages of records
+	private final Map<Integer, List<CMakeTrace.Record>> pageCache = new LinkedHashMap<Integer, List<CMakeTrace.Record>>(CACHED_PAGES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<CMakeTrace.Record>> eldest) {
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	@Override
+	public void createPartControl(Composite parent) {
+		parent.setLayout(new GridLayout(1, false));
+		statusLabel = new Label(parent, SWT.NONE);
+		statusLabel.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		statusLabel.setText("Use 'Show CMake trace' on a CMake project configured in trace mode.");
+
+		SashForm sash = new SashForm(parent, SWT.HORIZONTAL);
+		sash.setLayoutData(new GridData(GridData.FILL_BOTH));
+
+		filesTree = new Tree(sash, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
+		filesTree.setHeaderVisible(true);
+		addColumn(new TreeColumn(filesTree, SWT.LEFT), "File / line", 300);
+		addColumn(new TreeColumn(filesTree, SWT.RIGHT), "Runs", 80);
+		filesTree.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				TreeItem item = (TreeItem)event.item;
+				TreeItem fileItem = item.getParentItem();
+				if(trace == null) {
+					return;
+				}
+				if(fileItem == null) {
+					String file = treeFiles.get(filesTree.indexOf(item));
+					item.setText(new String[] { file, Integer.toString(trace.getRecordCount(file)) });
+					item.setItemCount(trace.getLineCounts(file).size());
+				}
+				else {
+					String file = treeFiles.get(filesTree.indexOf(fileItem));
+					Integer line = getLines(file).get(fileItem.indexOf(item));
+					item.setText(new String[] { "line " + line, Integer.toString(trace.getLineCounts(file).get(line)) }); //$NON-NLS-1$
+				}
+			}
+		});
+		filesTree.addListener(SWT.Selection, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				showRecord((TreeItem)event.item, false);
+			}
+		});
+		filesTree.addListener(SWT.DefaultSelection, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				showRecord((TreeItem)event.item, true);
+			}
+		});
+
+		recordsTable = new Table(sash, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
+		recordsTable.setHeaderVisible(true);
+		addColumn(new TableColumn(recordsTable, SWT.RIGHT), "#", 70);
+		addColumn(new TableColumn(recordsTable, SWT.LEFT), "File", 250);
+		addColumn(new TableColumn(recordsTable, SWT.RIGHT), "Line", 50);
+		addColumn(new TableColumn(recordsTable, SWT.LEFT), "Command", 120);
+		addColumn(new TableColumn(recordsTable, SWT.LEFT), "Arguments", 400);
+		recordsTable.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				TableItem item = (TableItem)event.item;
+				int index = recordsTable.indexOf(item);
+				CMakeTrace.Record record = getRecord(index);
+				if(record != null) {
+					String indent = ""; //$NON-NLS-1$
+					for(int i = 1; i < record.getFrame() && i < 32; i++) {
+						indent += "  "; //$NON-NLS-1$
+					}
+					item.setText(new String[] { Integer.toString(index + 1), record.getFile(), Integer.toString(record.getLine()), 
+							indent + record.getCommand(), record.getArgs() });
+				}
+			}
+		});
+		sash.setWeights(new int[] { 1, 2 });
+	}
+
+	private static void addColumn(TreeColumn column, String text, int width) {
+		column.setText(text);
+		column.setWidth(width);
+	}
+
+	private static void addColumn(TableColumn column, String text, int width) {
+		column.setText(text);
+		column.setWidth(width);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+	 */
+	@Override
+	public void setFocus() {
+		recordsTable.setFocus();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#dispose()
+	 */
+	@Override
+	public void dispose() {
+		if(indexJob != null) {
+			indexJob.cancel();
+		}
+		super.dispose();
+	}
+
+	/**
+	 * Indexes <code>traceFile</code> in the background and shows it when done.
+	 */
+	public void setTraceFile(File traceFile) {
+		if(indexJob != null) {
+			indexJob.cancel();
+		}
+		trace = null;
+		synchronized (pageCache) {
+			pageCache.clear();
+		}
+		treeFiles = Collections.emptyList();
+		treeLines.clear();
+		recordsTable.setItemCount(0);
+		filesTree.removeAll();
+		if(!traceFile.isFile()) {
+			statusLabel.setText("No trace found at " + traceFile + ". Turn on trace mode in the CMake settings of the project and run CMake.");
+			return;
+		}
+		statusLabel.setText("Indexing " + traceFile + " ...");
+
+		final CMakeTrace newTrace = new CMakeTrace(traceFile);
+		indexJob = new Job("Indexing CMake trace") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					newTrace.index(monitor);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				} catch (IOException e) {
+					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Could not read " + newTrace.getFile(), e);
+				}
+				if(!statusLabel.isDisposed()) {
+					statusLabel.getDisplay().asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if(!statusLabel.isDisposed()) {
+								show(newTrace);
+							}
+						}
+					});
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		indexJob.setUser(false);
+		indexJob.schedule();
+	}
+
+	private void show(CMakeTrace newTrace) {
+		trace = newTrace;
+		statusLabel.setText(trace.getFile() + ": " + trace.getRecordCount() + " commands in " + trace.getFiles().size() + " files"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		List<String> files = new ArrayList<String>(trace.getFiles());
+		// the busiest files first
+		Collections.sort(files, new Comparator<String>() {
+			@Override
+			public int compare(String f1, String f2) {
+				return trace.getRecordCount(f2) - trace.getRecordCount(f1);
+			}
+		});
+		treeFiles = files;
+		// the items are filled in when they become visible
+		filesTree.setItemCount(files.size());
+		recordsTable.setItemCount(trace.getRecordCount());
+	}
+
+	/**
+	 * @return the lines run in file, in ascending order
+	 */
+	private List<Integer> getLines(String file) {
+		List<Integer> lines = treeLines.get(file);
+		if(lines == null) {
+			lines = new ArrayList<Integer>(trace.getLineCounts(file).keySet());
+			Collections.sort(lines);
+			treeLines.put(file, lines);
+		}
+		return lines;
+	}
+
+	/**
+	 * Selects the first record of the file or line of item in the table, 
+	 * or with <code>next</code> the first one after the selected record.
+	 */
+	private void showRecord(TreeItem item, boolean next) {
+		if(trace == null || item == null) {
+			return;
+		}
+		TreeItem fileItem = item.getParentItem();
+		int record = -1;
+		if(fileItem == null) {
+			record = trace.getFirstRecord(treeFiles.get(filesTree.indexOf(item)));
+		}
+		else {
+			String file = treeFiles.get(filesTree.indexOf(fileItem));
+			int line = getLines(file).get(fileItem.indexOf(item));
+			int after = next ? recordsTable.getSelectionIndex() : -1;
+			record = findRecord(file, line, after);
+			if(record < 0 && after >= 0) {
+				// wrap around
+				record = findRecord(file, line, -1);
+			}
+		}
+		if(record >= 0) {
+			recordsTable.setSelection(record);
+			recordsTable.showSelection();
+		}
+	}
+
+	/**
+	 * @return the number of the first record of a line after record <code>after</code>, -1 if there is none
+	 */
+	private int findRecord(String file, int line, int after) {
+		for(int page: trace.getPages(file, line)) {
+			if((page + 1) * CMakeTrace.PAGE_SIZE <= after + 1) {
+				continue;
+			}
+			for(int index = Math.max(page * CMakeTrace.PAGE_SIZE, after + 1); index < (page + 1) * CMakeTrace.PAGE_SIZE; index++) {
+				CMakeTrace.Record record = getRecord(index);
+				if(record == null) {
+					break;
+				}
+				if(record.getLine() == line && record.getFile().equals(file)) {
+					return index;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private CMakeTrace.Record getRecord(int index) {
+		if(trace == null || index < 0) {
+			return null;
+		}
+		int page = index / CMakeTrace.PAGE_SIZE;
+		List<CMakeTrace.Record> records;
+		synchronized (pageCache) {
+			records = pageCache.get(page);
+		}
+		if(records == null) {
+			try {
+				records = trace.readPage(page);
+			} catch (IOException e) {
+				Activator.log(e);
+				return null;
+			}
+			synchronized (pageCache) {
+				pageCache.put(page, records);
+			}
+		}
+		int offset = index % CMakeTrace.PAGE_SIZE;
+		return offset < records.size() ? records.get(offset) : null;
+	}
+}
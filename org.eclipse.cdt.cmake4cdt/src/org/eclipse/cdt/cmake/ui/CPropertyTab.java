@@ -18,6 +18,8 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 
+import org.eclipse.cdt.cmake.Activator;
+import org.eclipse.cdt.cmake.BuildParallelism;
 import org.eclipse.cdt.cmake.CMakeMakefileGenerator;
 import org.eclipse.cdt.cmake.CMakeOutputPath;
 import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
@@ -33,10 +35,12 @@ import org.eclipse.cdt.ui.newui.ICPropertyProvider;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
@@ -50,7 +54,9 @@ import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Text;
+import org.osgi.service.prefs.BackingStoreException;
 
 public class CPropertyTab extends AbstractCPropertyTab {
 
@@ -59,6 +65,7 @@ public class CPropertyTab extends AbstractCPropertyTab {
 	public final static String CMAKE_OPTION_BUILDTYPE = "org.eclipse.cdt.cmake.option.buildType";
 	public final static String CMAKE_OPTION_DEBUG = "org.eclipse.cdt.cmake.option.debug";
 	public final static String CMAKE_OPTION_TRACE = "org.eclipse.cdt.cmake.option.trace";
+	public final static String CMAKE_OPTION_PROFILING = "org.eclipse.cdt.cmake.option.profiling";
 	
 
 	private Combo cmakeBuildTypeCombo;
@@ -66,6 +73,8 @@ public class CPropertyTab extends AbstractCPropertyTab {
 	private Text  additionalCMakeArgsLabelTextField;
 	private Button traceBtn;
 	private Button debugBtn;
+	private Button profilingBtn;
+	private Spinner parallelJobsSpinner;
 	
 	private ICConfigurationDescription cfgd = null;
 	private String  m_toolchainFile = null;
@@ -73,6 +82,8 @@ public class CPropertyTab extends AbstractCPropertyTab {
 	private String  m_buildType = null;
 	private boolean m_trace = false;
 	private boolean m_debug = false;
+	private boolean m_profiling = false;
+	private int     m_parallelJobs = 0;
 
 	public CPropertyTab() {
 	}
@@ -156,7 +167,7 @@ public class CPropertyTab extends AbstractCPropertyTab {
 
 		Label cmakeTraceLabel = new Label(usercomp, SWT.NONE);
 		cmakeTraceLabel.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
-		cmakeTraceLabel.setText("Trace mode (--trace):");
+		cmakeTraceLabel.setText("Trace mode (--trace, to a file in the build dir):");
 		
 		traceBtn = new Button(usercomp, SWT.CHECK);
 		gd = new GridData(GridData.FILL_HORIZONTAL);
@@ -189,6 +200,42 @@ public class CPropertyTab extends AbstractCPropertyTab {
 		      }
 		});
 		
+		
+		Label cmakeProfilingLabel = new Label(usercomp, SWT.NONE);
+		cmakeProfilingLabel.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		cmakeProfilingLabel.setText("Profiling (--profiling-format=google-trace):");
+		
+		profilingBtn = new Button(usercomp, SWT.CHECK);
+		gd = new GridData(GridData.FILL_HORIZONTAL);
+		gd.horizontalSpan = 2;
+		
+		profilingBtn.setLayoutData(gd);
+		profilingBtn.setSelection( false );
+		profilingBtn.addSelectionListener(new SelectionAdapter() {
+		      public void widgetSelected(SelectionEvent event) {
+		    	  m_profiling = ((Button) event.getSource()).getSelection();
+		      }
+		});
+		
+		
+		Label parallelJobsLabel = new Label(usercomp, SWT.NONE);
+		parallelJobsLabel.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		parallelJobsLabel.setText("Parallel build jobs (-j, 0 = automatic):");
+		
+		parallelJobsSpinner = new Spinner(usercomp, SWT.BORDER);
+		gd = new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING);
+		gd.horizontalSpan = 2;
+		
+		parallelJobsSpinner.setLayoutData(gd);
+		parallelJobsSpinner.setValues(0, 0, 1024, 0, 1, 8);
+		parallelJobsSpinner.setToolTipText("Automatic: " + BuildParallelism.getAutomaticJobs() + " (one per processor, limited by the available memory)");
+		parallelJobsSpinner.addModifyListener(new ModifyListener() {
+			@Override
+			public void modifyText(ModifyEvent e) {
+				m_parallelJobs = parallelJobsSpinner.getSelection();
+			}
+		});
+		
 		ICResourceDescription _cfgd = getResDesc();
 		cfgd = (_cfgd != null) ? _cfgd.getConfiguration() : null;
 		// getToolSettings();
@@ -279,6 +326,15 @@ public class CPropertyTab extends AbstractCPropertyTab {
 			m_trace = traceOption.getBooleanValue();
 			traceBtn.setSelection(m_trace);
 			
+			IOption profilingOption = cmakeTool.getOptionBySuperClassId(CMAKE_OPTION_PROFILING);
+			m_profiling = profilingOption.getBooleanValue();
+			profilingBtn.setSelection(m_profiling);
+			
+			// per project, not per configuration
+			IEclipsePreferences projectProperties = getProjectProperties();
+			m_parallelJobs = projectProperties.getInt(CMakePropertyConstants.P_PARALLEL_JOBS, 0);
+			parallelJobsSpinner.setSelection(m_parallelJobs);
+			
 		} catch (BuildException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
@@ -318,17 +374,32 @@ public class CPropertyTab extends AbstractCPropertyTab {
 			IOption traceOption = cmakeTool.getOptionToSet(traceOptionTmpl, false);
 			traceOption.setValue(m_trace);
 	        ManagedBuildManager.setOption(resourceInfo, cmakeTool, toolchainfileOption, m_toolchainFile);
+
+			IOption profilingOptionTmpl = cmakeTool.getOptionById(CMAKE_OPTION_PROFILING);
+			IOption profilingOption = cmakeTool.getOptionToSet(profilingOptionTmpl, false);
+			profilingOption.setValue(m_profiling);
+	        ManagedBuildManager.setOption(resourceInfo, cmakeTool, profilingOption, m_profiling);
  
 	        // ------ Save this business to disk.
 	        ManagedBuildManager.saveBuildInfo(cfgd.getProjectDescription().getProject(), true);
+
+	        IEclipsePreferences projectProperties = getProjectProperties();
+	        projectProperties.putInt(CMakePropertyConstants.P_PARALLEL_JOBS, m_parallelJobs);
+	        projectProperties.flush();
 			
 		} catch (BuildException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
+		} catch (BackingStoreException e1) {
+			Activator.log(e1);
 		}
 		
 	}
 	
+	private IEclipsePreferences getProjectProperties() {
+		return new ProjectScope(cfgd.getProjectDescription().getProject()).getNode("org.eclipse.cdt.cmake.scope");
+	}
+	
 	private ITool getCMakeTool() {
 		IConfiguration cfg = ManagedBuildManager.getConfigurationForDescription(cfgd);
 		ITool[] cmakeTools = cfg.getToolsBySuperClassId(CMakeMakefileGenerator.CMAKE_TOOL_ID);
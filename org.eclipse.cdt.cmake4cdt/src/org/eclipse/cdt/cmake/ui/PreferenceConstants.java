@@ -31,4 +31,10 @@ public class PreferenceConstants {
 	public static final String P_CMAKE_VIA_PATH = "cmakeViaPathPreference";
 	public static final String P_CMAKE_GENERATOR = "CMakeGenerator";
 
+	public static final String P_COMPILE_CMDS_CACHE_LIMIT = "compileCmdsCacheLimit";
+	public static final String P_LANGSET_PERSIST = "langSetPersist";
+	public static final String P_CMAKE_MAX_PARALLEL_RUNS = "cmakeMaxParallelRuns";
+	public static final String P_STAGED_CONFIGURE = "stagedConfigure";
+	public static final String P_INITIAL_CACHE = "initialCache";
+
 }
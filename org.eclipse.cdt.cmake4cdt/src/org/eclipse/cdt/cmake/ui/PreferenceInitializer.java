@@ -31,6 +31,11 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
 		store.setDefault(PreferenceConstants.P_BUILDDIR, "${CMake_ProjectPath}/${ConfigName}");
 		store.setDefault(PreferenceConstants.P_DESTDIR, "${env_var:HOME}/target/${ConfigName}/opt/");
 		store.setDefault(PreferenceConstants.P_CMAKE_GENERATOR, ICMakeCommandConstants.GENERATOR_UNIX_MAKEFILES);
+		store.setDefault(PreferenceConstants.P_COMPILE_CMDS_CACHE_LIMIT, 0);
+		store.setDefault(PreferenceConstants.P_LANGSET_PERSIST, true);
+		store.setDefault(PreferenceConstants.P_CMAKE_MAX_PARALLEL_RUNS, Runtime.getRuntime().availableProcessors());
+		store.setDefault(PreferenceConstants.P_STAGED_CONFIGURE, false);
+		store.setDefault(PreferenceConstants.P_INITIAL_CACHE, true);
 	}
 
 }